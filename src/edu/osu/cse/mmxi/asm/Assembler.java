@@ -11,6 +11,8 @@ import edu.osu.cse.mmxi.common.UI;
 import edu.osu.cse.mmxi.common.error.Error;
 import edu.osu.cse.mmxi.common.error.ErrorLevels;
 import edu.osu.cse.mmxi.common.error.ParseException;
+import edu.osu.cse.mmxi.common.object.BinaryObjectFile;
+import edu.osu.cse.mmxi.common.object.ObjectFile;
 
 /**
  * This is the file contains the executing main. In addition the user interface,
@@ -19,10 +21,15 @@ import edu.osu.cse.mmxi.common.error.ParseException;
  * 
  */
 public class Assembler {
-    public IO         io;
-    public String     segName = null;
-    final List<Error> errors  = new ArrayList<Error>();
-    final UI          ui;
+    public IO                    io;
+    public String                segName = null;
+    final List<Error>            errors  = new ArrayList<Error>();
+    final UI                     ui;
+
+    /**
+     * The symbol and literal tables of this assembly.
+     */
+    public final AssemblyContext context = new AssemblyContext();
 
     /**
      * Constructor used for creating opening reading/writing IO and handling errors for
@@ -42,7 +49,98 @@ public class Assembler {
      */
     public Assembler(final UI ui, final String in, final String out,
         final String intermediate) throws IOException {
+        this(ui, in, out, intermediate, null);
+    }
+
+    /**
+     * Constructor which also writes the listing to a file, instead of to standard out.
+     * 
+     * @param ui
+     *            The User Interface object used for printing errors to screen and
+     *            prompting for user input on warning level errors.
+     * @param in
+     *            The in filename.
+     * @param out
+     *            The out filename.
+     * @param intermediate
+     *            The intermediate filename.
+     * @param listing
+     *            The listing filename, or null to print the listing to standard out.
+     * @throws IOException
+     *             Catches file writing/reading errors.
+     */
+    public Assembler(final UI ui, final String in, final String out,
+        final String intermediate, final String listing) throws IOException {
+        this(ui, in, out, intermediate, listing, false);
+    }
+
+    /**
+     * Constructor which can write the object file in the binary format (see
+     * {@link BinaryObjectFile}) instead of the text format.
+     * 
+     * @param ui
+     *            The User Interface object used for printing errors to screen and
+     *            prompting for user input on warning level errors.
+     * @param in
+     *            The in filename.
+     * @param out
+     *            The out filename.
+     * @param intermediate
+     *            The intermediate filename.
+     * @param listing
+     *            The listing filename, or null to print the listing to standard out.
+     * @param binary
+     *            Whether to write a binary object file.
+     * @throws IOException
+     *             Catches file writing/reading errors.
+     */
+    public Assembler(final UI ui, final String in, final String out,
+        final String intermediate, final String listing, final boolean binary)
+        throws IOException {
+        this(ui, in, out, null, intermediate, listing, binary);
+    }
+
+    /**
+     * Constructor which assembles into an in-memory object module, instead of writing
+     * an object file and a listing. The module can be given straight to the simulator's
+     * LinkingLoader.
+     * 
+     * @param ui
+     *            The User Interface object used for printing errors to screen and
+     *            prompting for user input on warning level errors.
+     * @param in
+     *            The in filename.
+     * @param module
+     *            The module to fill with the object records.
+     * @throws IOException
+     *             Catches file writing/reading errors.
+     */
+    public Assembler(final UI ui, final String in, final ObjectFile module)
+        throws IOException {
+        this(ui, in, null, module, null, null, false);
+    }
+
+    private Assembler(final UI ui, final String in, final String out,
+        final ObjectFile module, final String intermediate, final String listing,
+        final boolean binary) throws IOException {
         this.ui = ui;
+        final AssemblyContext outer = AssemblyContext.set(context);
+        try {
+            assemble(in, out, module, intermediate, listing, binary);
+        } finally {
+            AssemblyContext.set(outer);
+            if (io != null)
+                io.closeReader();
+        }
+    }
+
+    /**
+     * Runs both passes, with this assembly's context bound to the current thread. The
+     * source file is only read once; pass 2 works from the lines kept by pass 1.
+     */
+    private void assemble(final String in, final String out, final ObjectFile module,
+        final String intermediate, final String listing, final boolean binary)
+        throws IOException {
         io = new IO();
         try {
             io.openReader(in);
@@ -51,14 +149,16 @@ public class Assembler {
         }
 
         String interDat = null;
+        final Pass1Parser pass1 = new Pass1Parser(this, errors);
 
         try {
-            interDat = new Pass1Parser(this, errors).parse();
+            interDat = pass1.parse();
         } catch (final ParseException e) {
             errors.add(e.getError());
         } catch (final IOException e) {
             errors.add(new Error(e.getMessage(), AsmCodes.IO_BAD_READ));
         }
+        io.closeReader();
 
         ui.printErrors(errors);
 
@@ -66,10 +166,12 @@ public class Assembler {
             IO.writeFile(intermediate, interDat);
         else
             ;// System.out.print(interDat);
-        if (out != null) {
+        if (out != null || module != null) {
             try {
-                io.resetReader();
-                io.openWriters(out, null);
+                if (module != null)
+                    io.openModule(module);
+                else
+                    io.openWriters(out, listing, binary);
             } catch (final ParseException e) {
                 errors.add(e.getError());
             }
@@ -78,11 +180,10 @@ public class Assembler {
                 errors.add(0, new Error(AsmCodes.P2_GENERAL_ERROR));
 
             printErrorsAndCleanup(ui, intermediate, errors);
-            new Pass2Parser(this, errors).parse();
+            new Pass2Parser(this, errors, pass1.getLines()).parse();
             printErrorsAndCleanup(ui, intermediate, errors);
             io.closeWriters(false);
         }
-        io.closeReader();
     }
 
     /**
@@ -94,17 +195,19 @@ public class Assembler {
      *            to parse. args[1] (optional) The -i flag for wring an intermediate file.
      *            The filename will be parsed for trailing extension name and will replace
      *            with ".o" for the machine code object file and ".i" for the intermediate
-     *            file name.
+     *            file name. The -b flag writes the object file in the binary format.
      * @throws IOException
      */
     public static void main(final String[] args) throws IOException {
         final UI ui = new UI();
         String file = null;
-        boolean intermediate = false;
+        boolean intermediate = false, binary = false;
         final List<Error> errors = new ArrayList<Error>();
         for (final String s : args)
             if (s.equals("-i"))
                 intermediate = true;
+            else if (s.equals("-b"))
+                binary = true;
             else if (file == null)
                 file = s;
             else
@@ -115,7 +218,8 @@ public class Assembler {
         String stem = file;
         if (stem.indexOf('.') != 0)
             stem = stem.substring(0, stem.lastIndexOf('.'));
-        new Assembler(ui, args[0], stem + ".o", intermediate ? stem + ".i" : null);
+        new Assembler(ui, file, stem + ".o", intermediate ? stem + ".i" : null, null,
+            binary);
     }
 
     private void printErrorsAndCleanup(final UI ui, final String iFile,
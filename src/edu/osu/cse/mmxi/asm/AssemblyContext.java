@@ -0,0 +1,76 @@
+package edu.osu.cse.mmxi.asm;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * <p>
+ * The tables belonging to a single assembly: the symbol table, the literal table, and
+ * whether the literal table is complete (which happens at the end of pass 1). Each
+ * {@link Assembler} has its own context, so that several files can be assembled one
+ * after another, or at the same time on different threads, in the same JVM.
+ * </p>
+ * 
+ * <p>
+ * Symbols are looked up from deep inside the parsers (for example by
+ * {@code ArithmeticParser}), so rather than being passed around, the context of the
+ * running assembly is bound to the current thread by the Assembler. Code that runs
+ * outside an Assembler (such as unit tests) gets a fresh context for its thread.
+ * </p>
+ * 
+ * <p>
+ * The instruction format table, {@link InstructionFormat#instructions}, is not part of
+ * the context: it is filled in when that class is initialized and only read afterwards,
+ * so it is safely shared by every assembly.
+ * </p>
+ */
+public class AssemblyContext {
+    private static final ThreadLocal<AssemblyContext> current          = new Current();
+
+    /**
+     * The symbol table, keyed by the (truncated) symbol name.
+     */
+    public final SortedMap<String, Symbol>             symbs            = new TreeMap<String, Symbol>();
+
+    /**
+     * The literal table, keyed by the literal's value.
+     */
+    public final SortedMap<Short, Literal>             literals         = new TreeMap<Short, Literal>();
+
+    /**
+     * Set once no more literals will be added, so that their addresses can be
+     * calculated.
+     */
+    public boolean                                     literalsComplete = false;
+
+    /**
+     * Gives every thread a fresh context until an Assembler binds its own.
+     */
+    private static class Current extends ThreadLocal<AssemblyContext> {
+        @Override
+        protected AssemblyContext initialValue() {
+            return new AssemblyContext();
+        }
+    }
+
+    /**
+     * @return the context of the assembly running on this thread
+     */
+    public static AssemblyContext get() {
+        return current.get();
+    }
+
+    /**
+     * Binds a context to the current thread.
+     * 
+     * @param context
+     *            the new context
+     * @return the context which was previously bound, to be restored with
+     *         {@link #set(AssemblyContext)} when the assembly is done
+     */
+    public static AssemblyContext set(final AssemblyContext context) {
+        final AssemblyContext old = current.get();
+        current.set(context);
+        return old;
+    }
+}
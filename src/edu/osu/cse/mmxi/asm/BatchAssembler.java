@@ -0,0 +1,221 @@
+package edu.osu.cse.mmxi.asm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import edu.osu.cse.mmxi.asm.error.AsmCodes;
+import edu.osu.cse.mmxi.common.UI;
+import edu.osu.cse.mmxi.common.error.Error;
+
+/**
+ * <p>
+ * Assembles many files in one run, in parallel on a fixed pool of worker threads. Each
+ * file gets its own {@link Assembler} (and so its own symbol and literal tables), and
+ * is written to an object file and a listing file next to the source, with the
+ * extensions {@code .o} and {@code .lst}. Nothing is read from the console: warnings do
+ * not stop the assembly, and a fatal error only stops the file it occurred in. When all
+ * the files are done, the errors and timing of each file are printed in the order the
+ * files were given, followed by a summary line.
+ * </p>
+ * 
+ * <p>
+ * Usage:
+ * </p>
+ * 
+ * <pre>
+ *    java BatchAssembler [-j <i>threads</i>] [-i] [-b] <i>file.asm</i>|<i>dir</i> ...
+ * </pre>
+ * 
+ * <p>
+ * A directory stands for every {@code .asm} file in it. <code>-j</code> sets the number
+ * of worker threads (by default, the number of processors), and <code>-i</code> and
+ * <code>-b</code> write intermediate files and binary object files, as for the
+ * Assembler. The exit status is 1 if any file failed to assemble, and 0 otherwise.
+ * </p>
+ */
+public final class BatchAssembler {
+    private int     threads      = Runtime.getRuntime().availableProcessors();
+    private boolean intermediate = false;
+    private boolean binary       = false;
+
+    /**
+     * The outcome of assembling one file.
+     */
+    public static class Result {
+        public final String file;
+        public boolean      ok;
+        public long         nanos;
+        public String       messages;
+
+        public Result(final String _file) {
+            file = _file;
+        }
+    }
+
+    /**
+     * Thrown by {@link BufferUI#exit()} to stop one assembly without exiting the JVM.
+     */
+    private static class Fault extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * A UI which never prompts, and collects everything printed into a buffer.
+     */
+    private static class BufferUI extends UI {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        BufferUI() {
+            out = err = new PrintStream(buffer);
+        }
+
+        @Override
+        public String prompt(final String msg) {
+            return "";
+        }
+
+        @Override
+        public void exit() {
+            throw new Fault();
+        }
+
+        String getOutput() {
+            out.flush();
+            return buffer.toString();
+        }
+    }
+
+    /**
+     * Assembles one file.
+     * 
+     * @param file
+     *            the assembly source
+     * @return the outcome
+     */
+    public Result assemble(final String file) {
+        final Result r = new Result(file);
+        final String stem = file.replaceAll("\\.[^./\\\\]*$", "");
+        final BufferUI ui = new BufferUI();
+        final long start = System.nanoTime();
+        try {
+            new Assembler(ui, file, stem + ".o", intermediate ? stem + ".i" : null, stem
+                + ".lst", binary);
+            r.ok = true;
+        } catch (final Fault e) {
+            r.ok = false;
+        } catch (final IOException e) {
+            ui.warn(new Error(e.getMessage(), AsmCodes.IO_BAD_READ).toString());
+            r.ok = false;
+        } catch (final RuntimeException e) {
+            ui.warn("Internal error: " + e);
+            r.ok = false;
+        }
+        r.nanos = System.nanoTime() - start;
+        r.messages = ui.getOutput();
+        return r;
+    }
+
+    /**
+     * Assembles every file across the worker pool.
+     * 
+     * @param files
+     *            the assembly sources
+     * @return the outcomes, in the same order as the files
+     */
+    public List<Result> assembleAll(final List<String> files) {
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final List<Future<Result>> futures = new ArrayList<Future<Result>>();
+        for (final String file : files)
+            futures.add(pool.submit(new Callable<Result>() {
+                @Override
+                public Result call() {
+                    return assemble(file);
+                }
+            }));
+        pool.shutdown();
+
+        final List<Result> results = new ArrayList<Result>();
+        for (int i = 0; i < futures.size(); i++)
+            try {
+                results.add(futures.get(i).get());
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (final ExecutionException e) {
+                final Result r = new Result(files.get(i));
+                r.messages = "Internal error: " + e.getCause() + "\n";
+                results.add(r);
+            }
+        return results;
+    }
+
+    /**
+     * Expands directories in the file arguments into the {@code .asm} files in them, in
+     * name order.
+     */
+    private static List<String> sources(final List<String> args) {
+        final List<String> files = new ArrayList<String>();
+        for (final String arg : args) {
+            final File dir = new File(arg);
+            if (dir.isDirectory()) {
+                final String[] names = dir.list();
+                Arrays.sort(names);
+                for (final String name : names)
+                    if (name.endsWith(".asm"))
+                        files.add(new File(dir, name).getPath());
+            } else
+                files.add(arg);
+        }
+        return files;
+    }
+
+    public static void main(final String[] args) {
+        final BatchAssembler driver = new BatchAssembler();
+        final UI ui = new UI();
+        final List<Error> errors = new ArrayList<Error>();
+        final List<String> names = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++)
+            if (args[i].equals("-i"))
+                driver.intermediate = true;
+            else if (args[i].equals("-b"))
+                driver.binary = true;
+            else if (args[i].equals("-j") && i + 1 < args.length)
+                try {
+                    driver.threads = Math.max(1, Integer.parseInt(args[++i]));
+                } catch (final NumberFormatException e) {
+                    errors.add(new Error("-j " + args[i], AsmCodes.IO_BAD_THREADS));
+                }
+            else
+                names.add(args[i]);
+        if (names.size() == 0)
+            errors.add(new Error(AsmCodes.IO_NO_INPUT));
+        ui.printErrors(errors);
+
+        final long start = System.nanoTime();
+        final List<Result> results = driver.assembleAll(sources(names));
+        final double ms = (System.nanoTime() - start) / 1e6;
+
+        int failed = 0;
+        for (final Result r : results) {
+            ui.println("==> " + r.file + " <==");
+            ui.print(r.messages);
+            ui.println(String.format("%s in %.3f ms", r.ok ? "assembled" : "failed",
+                r.nanos / 1e6));
+            if (!r.ok)
+                failed++;
+        }
+        ui.println(String.format("%d files: %d assembled, %d failed in %.3f ms",
+            results.size(), results.size() - failed, failed, ms));
+        System.exit(failed != 0 ? 1 : 0);
+    }
+}
@@ -31,7 +31,8 @@ import edu.osu.cse.mmxi.common.error.ParseException;
  */
 public class InstructionFormat {
     /**
-     * Representation of a Map of instrucitons
+     * Representation of a Map of instrucitons. It is filled in while the class is
+     * initialized and only read afterwards, so it is shared by all assemblies.
      */
     public static final Map<String, List<IFRecord>> instructions = new HashMap<String, List<IFRecord>>();
     static {
@@ -1,8 +1,6 @@
 package edu.osu.cse.mmxi.asm;
 
 import java.util.Deque;
-import java.util.SortedMap;
-import java.util.TreeMap;
 
 import edu.osu.cse.mmxi.asm.symb.ArithmeticParser;
 import edu.osu.cse.mmxi.common.error.ParseException;
@@ -10,13 +8,13 @@ import edu.osu.cse.mmxi.common.error.ParseException;
 /**
  * This is the literal table row representation.
  * 
- * Representation is in a sortedMap<Short, Literal>
+ * Representation is in a sortedMap<Short, Literal>, held by the {@link AssemblyContext}
+ * the literal was created in.
  * 
  */
 public class Literal extends Symbol {
-    public static SortedMap<Short, Literal> table    = new TreeMap<Short, Literal>();
-    public static boolean                   complete = false;
-    public short                            contents;
+    private final AssemblyContext context;
+    public short                  contents;
 
     /**
      * Return the literal representation
@@ -26,9 +24,10 @@ public class Literal extends Symbol {
      * @return
      */
     public static Literal getLiteral(final short value) {
-        if (!table.containsKey(value))
-            table.put(value, new Literal(value));
-        return table.get(value);
+        final AssemblyContext context = AssemblyContext.get();
+        if (!context.literals.containsKey(value))
+            context.literals.put(value, new Literal(context, value));
+        return context.literals.get(value);
     }
 
     /**
@@ -37,14 +36,15 @@ public class Literal extends Symbol {
      * @return
      */
     public short getIndex() {
-        return (short) (table.size() - table.tailMap(contents).size());
+        return (short) (context.literals.size() - context.literals.tailMap(contents)
+            .size());
     }
 
     /**
      * Fill the literal value.
      */
     public void fill() {
-        if (Literal.complete && value == null)
+        if (context.literalsComplete && value == null)
             try {
                 value = ArithmeticParser.parseF(":0 + :1", ":END", getIndex());
             } catch (final ParseException e) {
@@ -64,11 +64,14 @@ public class Literal extends Symbol {
     /**
      * Set the content of the literal
      * 
+     * @param _context
+     *            The context whose literal table holds the literal
      * @param v
      *            The short literal value
      */
-    private Literal(final short v) {
+    private Literal(final AssemblyContext _context, final short v) {
         super("=#" + v);
+        context = _context;
         contents = v;
     }
 }
@@ -4,6 +4,7 @@ import static edu.osu.cse.mmxi.asm.CommonParser.checkLine;
 import static edu.osu.cse.mmxi.asm.CommonParser.parseLine;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import edu.osu.cse.mmxi.asm.error.AsmCodes;
@@ -11,6 +12,7 @@ import edu.osu.cse.mmxi.asm.line.InstructionLine;
 import edu.osu.cse.mmxi.asm.line.InstructionLine.Argument;
 import edu.osu.cse.mmxi.asm.line.InstructionLine.ExpressionArg;
 import edu.osu.cse.mmxi.asm.line.InstructionLine.StringArg;
+import edu.osu.cse.mmxi.asm.line.SourceLine;
 import edu.osu.cse.mmxi.asm.symb.ArithmeticParser;
 import edu.osu.cse.mmxi.asm.symb.SymbolExpression;
 import edu.osu.cse.mmxi.common.error.Error;
@@ -64,6 +66,11 @@ public class Pass1Parser {
      */
     private final List<Error> errors;
 
+    /**
+     * The lines read from the source file, kept for pass 2.
+     */
+    private final List<SourceLine> lines = new ArrayList<SourceLine>();
+
     /**
      * Initialize the parser
      * 
@@ -91,12 +98,14 @@ public class Pass1Parser {
         lineNumber = 1;
         tempNumber = 0;
         while ((line = a.io.getLine()) != null) {
+            boolean isParsed = false;
             try {
                 final String[] parsed = checkLine(parseLine(line));
 
                 label = parsed[0] == null ? null : Symbol.getSymb(parsed[0]);
 
                 inst = parsed[1] == null ? null : new InstructionLine(parsed);
+                isParsed = true;
 
                 if ((inst == null || !inst.opcode.matches("[.]ORIG|[.]EQU"))
                     && label != null)
@@ -125,12 +134,22 @@ public class Pass1Parser {
             } catch (final ParseException e) {
                 errors.add(e.getError().setLine(lineNumber).setContext(line));
             }
+            lines.add(new SourceLine(lineNumber, line, isParsed ? inst : null, isParsed));
             lineNumber++;
         }
         cleanupSymbols();
         return Symbol.printSymbs();
     }
 
+    /**
+     * Get the lines read by {@link #parse()}, along with their parsed instructions.
+     * 
+     * @return the source lines, in order
+     */
+    public List<SourceLine> getLines() {
+        return lines;
+    }
+
     /**
      * Parse an .ORIG line for all of its parts.
      * 
@@ -284,13 +303,13 @@ public class Pass1Parser {
     private void cleanupSymbols() throws ParseException {
         try {
             Symbol.getSymb(":END").set(ArithmeticParser.parseF(":0 + :1", lcBase, lc));
-            Literal.complete = true;
+            AssemblyContext.get().literalsComplete = true;
         } catch (final ParseException e) {
             a.ui.printErrors(e.getError());
         }
-        for (final Symbol s : Symbol.symbs.values())
+        for (final Symbol s : AssemblyContext.get().symbs.values())
             s.expand();
-        for (final Symbol s : Literal.table.values())
+        for (final Symbol s : AssemblyContext.get().literals.values())
             s.expand();
     }
 }
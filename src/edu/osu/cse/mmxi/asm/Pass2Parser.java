@@ -4,7 +4,6 @@ import static edu.osu.cse.mmxi.asm.CommonParser.checkLine;
 import static edu.osu.cse.mmxi.asm.CommonParser.errorOnUndefinedSymbols;
 import static edu.osu.cse.mmxi.asm.CommonParser.parseLine;
 import static edu.osu.cse.mmxi.common.Utilities.padLeft;
-import static edu.osu.cse.mmxi.common.Utilities.padRight;
 import static edu.osu.cse.mmxi.common.Utilities.uShortToHex;
 
 import java.util.List;
@@ -14,6 +13,7 @@ import edu.osu.cse.mmxi.asm.line.InstructionLine;
 import edu.osu.cse.mmxi.asm.line.InstructionLine.Argument;
 import edu.osu.cse.mmxi.asm.line.InstructionLine.ExpressionArg;
 import edu.osu.cse.mmxi.asm.line.InstructionLine.StringArg;
+import edu.osu.cse.mmxi.asm.line.SourceLine;
 import edu.osu.cse.mmxi.asm.symb.ArithmeticParser;
 import edu.osu.cse.mmxi.asm.symb.SymbolExpression;
 import edu.osu.cse.mmxi.common.Location;
@@ -22,6 +22,7 @@ import edu.osu.cse.mmxi.common.error.ParseException;
 
 /**
  * Handles the actual parsing of the input file and finalizing the literals and symbols.
+ * The file is not read again: pass 2 works from the lines which pass 1 read and parsed.
  */
 public class Pass2Parser {
     /**
@@ -54,6 +55,11 @@ public class Pass2Parser {
      */
     private final List<Error> errors;
 
+    /**
+     * The source lines, as read and parsed by pass 1.
+     */
+    private final List<SourceLine> lines;
+
     /**
      * Constructor for Pass2Parser. Makes references for assebler and error list.
      * 
@@ -61,10 +67,14 @@ public class Pass2Parser {
      *            The reference to the assembler object
      * @param errors
      *            The reference to the errors
+     * @param lines
+     *            The source lines from pass 1
      */
-    public Pass2Parser(final Assembler a, final List<Error> errors) {
+    public Pass2Parser(final Assembler a, final List<Error> errors,
+        final List<SourceLine> lines) {
         this.a = a;
         this.errors = errors;
+        this.lines = lines;
     }
 
     /**
@@ -72,42 +82,14 @@ public class Pass2Parser {
      */
     public void parse() {
         lc = Location.convertToRelative(Symbol.getSymb(":START"));
-        lineNumber = 1;
         try {
             encodeHeader();
             encodeGlobals();
-            line = a.io.getLine();
+            for (final SourceLine source : lines)
+                encodeLine(source);
         } catch (final ParseException e) {
             errors.add(e.getError());
         }
-        while (line != null) {
-            try {
-                final String[] parsed = checkLine(parseLine(line));
-                inst = parsed[1] == null ? null : new InstructionLine(parsed);
-                if (inst != null)
-                    if (inst.opcode.charAt(0) == '.') {
-                        if (inst.opcode.equals(".STRZ"))
-                            parseSTRZ();
-                        else if (inst.opcode.equals(".ENT"))
-                            checkENT();
-                        else if (inst.opcode.equals(".FILL"))
-                            parseFILL();
-                        else if (inst.opcode.equals(".BLKW"))
-                            parseBLKW();
-                        else
-                            write(new short[0], new int[0], null);
-                    } else
-                        parseInstruction();
-            } catch (final ParseException e) {
-                errors.add(e.getError());
-            }
-            lineNumber++;
-            try {
-                line = a.io.getLine();
-            } catch (final ParseException e) {
-                errors.add(e.getError());
-            }
-        }
         try {
             encodeLiterals();
         } catch (final ParseException e) {
@@ -120,6 +102,42 @@ public class Pass2Parser {
         }
     }
 
+    /**
+     * Encode one line of the source. The instruction parsed by pass 1 is used, unless
+     * pass 1 could not parse the line, in which case it is parsed again here.
+     * 
+     * @param source
+     *            The line to encode
+     */
+    private void encodeLine(final SourceLine source) {
+        lineNumber = source.number;
+        line = source.text;
+        try {
+            if (source.parsed)
+                inst = source.inst;
+            else {
+                final String[] parsed = checkLine(parseLine(line));
+                inst = parsed[1] == null ? null : new InstructionLine(parsed);
+            }
+            if (inst != null)
+                if (inst.opcode.charAt(0) == '.') {
+                    if (inst.opcode.equals(".STRZ"))
+                        parseSTRZ();
+                    else if (inst.opcode.equals(".ENT"))
+                        checkENT();
+                    else if (inst.opcode.equals(".FILL"))
+                        parseFILL();
+                    else if (inst.opcode.equals(".BLKW"))
+                        parseBLKW();
+                    else
+                        write(new short[0], new int[0], null);
+                } else
+                    parseInstruction();
+        } catch (final ParseException e) {
+            errors.add(e.getError());
+        }
+    }
+
     /**
      * Encode the machine language header record.
      * 
@@ -127,7 +145,7 @@ public class Pass2Parser {
      */
     private void encodeHeader() throws ParseException {
         final SymbolExpression se = ArithmeticParser.simplify(ArithmeticParser.parseF(
-            ":0 + :1 - :2", ":END", Literal.table.size(), ":START"));
+            ":0 + :1 - :2", ":END", AssemblyContext.get().literals.size(), ":START"));
         final Short len = se.evaluate();
         if (len == null) {
             errorOnUndefinedSymbols(se, false);
@@ -136,8 +154,7 @@ public class Pass2Parser {
         if (a.segName == null)
             throw new ParseException(AsmCodes.P2_NO_ORIG);
         errorOnUndefinedSymbols(Symbol.getSymb(":START"), false);
-        a.io.writeOLine("H" + padRight(a.segName, 6, ' ')
-            + uShortToHex((short) lc.address) + uShortToHex(len));
+        a.io.writeHeader(a.segName, (short) lc.address, len);
     }
 
     /**
@@ -147,12 +164,12 @@ public class Pass2Parser {
      * @throws ParseException
      */
     private void encodeGlobals() throws ParseException {
-        for (final Symbol s : Symbol.symbs.values())
+        for (final Symbol s : AssemblyContext.get().symbs.values())
             if (s.global == Symbol.LOCAL && !s.name.startsWith(":")) {
                 final Location l = Location.convertToRelative(s.value);
                 if (l != null)
-                    a.io.writeOLine((l.isRelative ? "L" : "A") + s.name + "="
-                        + uShortToHex((short) l.address));
+                    a.io.writeSymbol(l.isRelative ? 'L' : 'A', s.name,
+                        (short) l.address);
             } else if (s.global == Symbol.ENT // fail silently on undefined ENT
                 && s.value != null) {
                 final SymbolExpression se = ArithmeticParser.simplify(ArithmeticParser
@@ -162,7 +179,7 @@ public class Pass2Parser {
                     errorOnUndefinedSymbols(s.value, false);
                     throw new ParseException(AsmCodes.P2_EXT_CMX, s + " = " + s.value);
                 }
-                a.io.writeOLine("G" + s.name + "=" + uShortToHex(loc));
+                a.io.writeSymbol('G', s.name, loc);
             }
     }
 
@@ -174,7 +191,7 @@ public class Pass2Parser {
     private void encodeLiterals() throws ParseException {
         lineNumber = 0;
         line = "";
-        for (final Literal l : Literal.table.values())
+        for (final Literal l : AssemblyContext.get().literals.values())
             write(new short[] { l.contents }, new int[] { -1 }, null);
     }
 
@@ -194,8 +211,7 @@ public class Pass2Parser {
             errorOnUndefinedSymbols(se, false);
             throw new ParseException(AsmCodes.P2_EXEC_CMX, "exec = " + se);
         }
-        a.io.writeOLine("E" + uShortToHex((short) exec.address)
-            + (exec.isRelative ? "M1" : ""));
+        a.io.writeExec((short) exec.address, exec.isRelative);
     }
 
     private void checkENT() throws ParseException {
@@ -295,10 +311,7 @@ public class Pass2Parser {
             for (int i = 0; i < data.length; i++) {
                 final String s = ext == null ? null : ext[i];
                 final char mx = s == null ? 'M' : 'X';
-                a.io.writeOLine("T" + uShortToHex((short) lc.address)
-                    + uShortToHex(data[i])
-                    + (m[i] < 0 ? "" : "" + mx + m[i] + (s == null ? "" : s))
-                    + (lineNumber == 0 ? "" : " #!L" + lineNumber + "!"));
+                a.io.writeText((short) lc.address, data[i], m[i], s, lineNumber);
                 a.io.writeLLine("(" + uShortToHex((short) lc.address) + ") "
                     + uShortToHex(data[i]) + (m[i] < 0 ? "   " : " " + mx + m[i]) + " "
                     + padLeft(Integer.toBinaryString(data[i] & 0xFFFF), 16, '0') + " ("
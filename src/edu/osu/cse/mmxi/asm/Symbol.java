@@ -2,7 +2,6 @@ package edu.osu.cse.mmxi.asm;
 
 import java.util.Deque;
 import java.util.SortedMap;
-import java.util.TreeMap;
 
 import edu.osu.cse.mmxi.asm.error.AsmCodes;
 import edu.osu.cse.mmxi.asm.error.RecursionException;
@@ -13,16 +12,12 @@ import edu.osu.cse.mmxi.common.error.ParseException;
 /**
  * This is the Symbol table row representation
  * 
- * Represented by a tuple of (String<name>, SymbolExpression<value>). Representation also
- * holds a table (SortedMap) of <name,value> pairs of all Symbols.
+ * Represented by a tuple of (String<name>, SymbolExpression<value>). The table
+ * (SortedMap) of <name,value> pairs of all Symbols is held by the current
+ * {@link AssemblyContext}.
  * 
  */
 public class Symbol extends SymbolExpression {
-    /**
-     * Holds a representation of all symbols
-     */
-    public static SortedMap<String, Symbol> symbs = new TreeMap<String, Symbol>();
-
     /**
      * The specific Symbol's string representation
      */
@@ -47,6 +42,7 @@ public class Symbol extends SymbolExpression {
      * @return Symbol
      */
     public static Symbol getSymb(final String name) {
+        final SortedMap<String, Symbol> symbs = AssemblyContext.get().symbs;
         final String sName = name.length() > 6 ? name.substring(0, 6) : name;
         if (!symbs.containsKey(sName))
             symbs.put(sName, new Symbol(name));
@@ -61,7 +57,7 @@ public class Symbol extends SymbolExpression {
      */
     public static void removeSymb(final String name) {
         final String sName = name.length() > 6 ? name.substring(0, 6) : name;
-        symbs.remove(sName);
+        AssemblyContext.get().symbs.remove(sName);
     }
 
     /**
@@ -149,11 +145,12 @@ public class Symbol extends SymbolExpression {
      * @return String representing the contents of the Symbol SortedMap.
      */
     public static String printSymbs() {
+        final AssemblyContext context = AssemblyContext.get();
         String ret = "";
-        for (final Symbol s : symbs.values())
+        for (final Symbol s : context.symbs.values())
             ret += s.value == null ? s.name + " =.\n" : s.name + " = " + s.value + "\n";
-        if (Literal.complete)
-            for (final Symbol s : Literal.table.values())
+        if (context.literalsComplete)
+            for (final Symbol s : context.literals.values())
                 ret += s.name + " = " + s.value + "\n";
         return ret;
     }
@@ -21,6 +21,8 @@ public enum AsmCodes implements ErrorCodes {
 
     IO_MANY_INPUT(111, "Multiple assembly files given", ErrorLevels.WARN),
 
+    IO_BAD_THREADS(112, "Thread count in invalid format", ErrorLevels.WARN),
+
     P1_INST_NO_SPACE(200, "Instruction lines must begin with whitespace",
         ErrorLevels.FATAL),
 
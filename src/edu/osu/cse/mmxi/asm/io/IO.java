@@ -1,5 +1,8 @@
 package edu.osu.cse.mmxi.asm.io;
 
+import static edu.osu.cse.mmxi.common.Utilities.padRight;
+import static edu.osu.cse.mmxi.common.Utilities.uShortToHex;
+
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
@@ -12,10 +15,16 @@ import java.io.OutputStreamWriter;
 
 import edu.osu.cse.mmxi.asm.error.AsmCodes;
 import edu.osu.cse.mmxi.common.error.ParseException;
+import edu.osu.cse.mmxi.common.object.BinaryObjectFile;
+import edu.osu.cse.mmxi.common.object.ObjectFile;
+import edu.osu.cse.mmxi.common.object.ObjectRecords;
 
 /**
  * Handles all the I/O functions for the assebler including: reading input assembly file,
- * writing output file, writing intermediate file.
+ * writing output file, writing intermediate file. The object records can instead be
+ * written into an in-memory {@link ObjectFile}, to be handed straight to the simulator's
+ * loader, or into a {@link BinaryObjectFile}, which is written out when the writers are
+ * closed.
  * 
  */
 public class IO {
@@ -23,23 +32,38 @@ public class IO {
     /**
      * Reads the input file
      */
-    private BufferedReader iReader;
+    private BufferedReader   iReader;
 
     /**
      * The file names for intermediate file (iFile), output file (oFile), listing file
      * (lFile)
      */
-    private String         iFile, oFile, lFile;
+    private String           iFile, oFile, lFile;
 
     /**
      * Writes the output file
      */
-    private BufferedWriter oWriter;
+    private BufferedWriter   oWriter;
 
     /**
      * Writes the listing file (optionally directed to standard out)
      */
-    private BufferedWriter lWriter;
+    private BufferedWriter   lWriter;
+
+    /**
+     * Receives the object records, when assembling into memory or to a binary file
+     */
+    private ObjectRecords    module;
+
+    /**
+     * The binary object file being built, when writing the binary format
+     */
+    private BinaryObjectFile binary;
+
+    /**
+     * Whether the listing is suppressed
+     */
+    private boolean          quiet;
 
     /**
      * Writes a file in bulk, given the filename and a string containing the data to
@@ -109,6 +133,25 @@ public class IO {
      * @throws FileNotFoundException
      */
     public void openWriters(final String oFile, final String lFile) throws ParseException {
+        openWriters(oFile, lFile, false);
+    }
+
+    /**
+     * Opens a new writer for file. Will close writer if it was already open.
+     * 
+     * @param oFile
+     *            The output file filename
+     * @param lFile
+     *            The listing file filename, or {@code null} for output to standard out
+     * @param binary
+     *            Whether to write the output file in the binary format; it is then
+     *            written all at once by {@link #closeWriters(boolean)}
+     * @throws ParseException
+     */
+    public void openWriters(final String oFile, final String lFile, final boolean binary)
+        throws ParseException {
+        module = this.binary = binary ? new BinaryObjectFile() : null;
+        quiet = false;
         final File o = new File(this.oFile = oFile);
         if (o.exists() && !o.canWrite())
             throw new ParseException(AsmCodes.IO_BAD_WRITE,
@@ -116,7 +159,8 @@ public class IO {
         try {
             if (oWriter != null)
                 oWriter.close();
-            oWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(o)));
+            oWriter = binary ? null : new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(o)));
         } catch (final IOException e) {
             throw new ParseException(AsmCodes.IO_BAD_WRITE,
                 "unable to open file for writing: " + oFile);
@@ -140,6 +184,21 @@ public class IO {
             lWriter = null;
     }
 
+    /**
+     * Directs the object records into an in-memory module instead of an output file.
+     * Nothing is written to the listing file, or to standard out.
+     * 
+     * @param module
+     *            The module to add the records to
+     */
+    public void openModule(final ObjectFile module) {
+        closeWriters(false);
+        this.module = module;
+        binary = null;
+        quiet = true;
+        oFile = lFile = null;
+    }
+
     /**
      * Retrieves one line of data from the input stream (the input file).
      * 
@@ -171,6 +230,89 @@ public class IO {
         }
     }
 
+    /**
+     * Writes a header record.
+     * 
+     * @param seg
+     *            The segment name
+     * @param begin
+     *            The beginning address of the segment
+     * @param length
+     *            The length of the segment
+     * @throws ParseException
+     */
+    public void writeHeader(final String seg, final short begin, final short length)
+        throws ParseException {
+        if (module != null)
+            module.addHeader(seg, begin, length);
+        else
+            writeOLine("H" + padRight(seg, 6, ' ') + uShortToHex(begin)
+                + uShortToHex(length));
+    }
+
+    /**
+     * Writes a text record.
+     * 
+     * @param address
+     *            The address of the word
+     * @param value
+     *            The value of the word
+     * @param m
+     *            0 for a 9 bit relocatable word, 1 for a 16 bit one, or -1 for an
+     *            absolute word
+     * @param ext
+     *            The external symbol the word is relative to, or {@code null}
+     * @param line
+     *            The source line number, or 0 for none
+     * @throws ParseException
+     */
+    public void writeText(final short address, final short value, final int m,
+        final String ext, final int line) throws ParseException {
+        if (module != null)
+            module.addText(address, value, m, ext, line == 0 ? -1 : line);
+        else
+            writeOLine("T" + uShortToHex(address) + uShortToHex(value)
+                + (m < 0 ? "" : ext == null ? "M" + m : "X" + m + ext)
+                + (line == 0 ? "" : " #!L" + line + "!"));
+    }
+
+    /**
+     * Writes a symbol record.
+     * 
+     * @param kind
+     *            'G' for a global symbol, 'L' for a local relative symbol, or 'A' for a
+     *            local absolute symbol
+     * @param name
+     *            The symbol name
+     * @param value
+     *            The value of the symbol
+     * @throws ParseException
+     */
+    public void writeSymbol(final char kind, final String name, final short value)
+        throws ParseException {
+        if (module != null)
+            module.addSymbol(kind, name, value);
+        else
+            writeOLine(kind + name + "=" + uShortToHex(value));
+    }
+
+    /**
+     * Writes the exec record.
+     * 
+     * @param address
+     *            The address execution begins at
+     * @param relative
+     *            Whether the address is relative
+     * @throws ParseException
+     */
+    public void writeExec(final short address, final boolean relative)
+        throws ParseException {
+        if (module != null)
+            module.addExec(address, relative);
+        else
+            writeOLine("E" + uShortToHex(address) + (relative ? "M1" : ""));
+    }
+
     /**
      * Writes one line of data to the listing file stream.
      * 
@@ -179,7 +321,9 @@ public class IO {
      * @throws IOException
      */
     public void writeLLine(final String line) throws ParseException {
-        if (lFile == null)
+        if (quiet)
+            return;
+        else if (lFile == null)
             System.out.println(line);
         else
             try {
@@ -203,7 +347,8 @@ public class IO {
     }
 
     /**
-     * Closes the writers for both the output and listing files.
+     * Closes the writers for both the output and listing files. A binary output file is
+     * written at this point, unless the files are being deleted.
      * 
      */
     public void closeWriters(final boolean delete) {
@@ -213,8 +358,12 @@ public class IO {
             if (lWriter != null && lFile != null)
                 lWriter.close();
             oWriter = lWriter = null;
+            if (binary != null && !delete)
+                binary.write(oFile);
+            binary = null;
             if (delete) {
-                new File(oFile).delete();
+                if (oFile != null)
+                    new File(oFile).delete();
                 if (lFile != null)
                     new File(lFile).delete();
             }
@@ -0,0 +1,50 @@
+package edu.osu.cse.mmxi.asm.line;
+
+/**
+ * One line of the assembly source, as read and parsed by pass 1. Pass 2 works from the
+ * list of these instead of reading and parsing the source file a second time.
+ * 
+ */
+public class SourceLine {
+    /**
+     * The line number in the source file, starting from 1.
+     */
+    public final int             number;
+
+    /**
+     * The text of the line, as read from the file.
+     */
+    public final String          text;
+
+    /**
+     * The instruction on the line, or {@code null} if the line has only a label or a
+     * comment, or could not be parsed.
+     */
+    public final InstructionLine inst;
+
+    /**
+     * Whether the line was parsed without error. If not, pass 2 parses {@link #text}
+     * again, so that it reports the error in its own way.
+     */
+    public final boolean         parsed;
+
+    /**
+     * Constructor for a source line.
+     * 
+     * @param _number
+     *            The line number
+     * @param _text
+     *            The text of the line
+     * @param _inst
+     *            The parsed instruction, if any
+     * @param _parsed
+     *            Whether the line was parsed without error
+     */
+    public SourceLine(final int _number, final String _text, final InstructionLine _inst,
+        final boolean _parsed) {
+        number = _number;
+        text = _text;
+        inst = _inst;
+        parsed = _parsed;
+    }
+}
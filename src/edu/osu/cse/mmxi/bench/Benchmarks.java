@@ -0,0 +1,303 @@
+package edu.osu.cse.mmxi.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.osu.cse.mmxi.asm.Assembler;
+import edu.osu.cse.mmxi.common.XorShift;
+import edu.osu.cse.mmxi.common.error.Error;
+import edu.osu.cse.mmxi.common.object.ObjectFile;
+import edu.osu.cse.mmxi.sim.loader.LinkingLoader;
+import edu.osu.cse.mmxi.sim.machine.Machine;
+import edu.osu.cse.mmxi.sim.machine.interpreter.FastInterpreter;
+import edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser;
+import edu.osu.cse.mmxi.sim.machine.interpreter.JitInterpreter;
+import edu.osu.cse.mmxi.sim.machine.memory.FillMemory;
+import edu.osu.cse.mmxi.sim.machine.memory.FlatMemory;
+import edu.osu.cse.mmxi.sim.machine.memory.Memory;
+import edu.osu.cse.mmxi.sim.machine.memory.RandomizedMemory;
+import edu.osu.cse.mmxi.sim.ui.SimUI;
+
+/**
+ * <p>
+ * A small throughput benchmark harness for the simulator and assembler hot paths. Each
+ * benchmark is run for a number of untimed warmup rounds, so that the JIT has compiled
+ * the code under test, and then for a number of timed rounds; the result is reported as
+ * operations per second over the timed rounds, along with the best single round.
+ * </p>
+ * 
+ * <p>
+ * The command line arguments are the assembly programs to use for the assembler, object
+ * file and linker benchmarks. An argument may be a comma-separated list of files which
+ * are linked together, such as {@code quineL-main.asm,quineL-pHex.asm}. Run with
+ * {@code ant benchmark}.
+ * </p>
+ */
+public class Benchmarks {
+    /**
+     * The number of untimed rounds run before measuring each benchmark.
+     */
+    public static final int WARMUP       = 5;
+
+    /**
+     * The number of timed rounds for each benchmark.
+     */
+    public static final int ROUNDS       = 10;
+
+    /**
+     * The number of instructions executed per round by the machine benchmarks.
+     */
+    public static final int INSTRUCTIONS = 1000000;
+
+    /**
+     * Accumulates a value from every round, so that the work done cannot be optimized
+     * away.
+     */
+    static long             sink;
+
+    /**
+     * A single benchmark. {@link #run()} performs one round and returns the number of
+     * operations it performed.
+     */
+    abstract static class Benchmark {
+        final String name, unit;
+
+        Benchmark(final String _name, final String _unit) {
+            name = _name;
+            unit = _unit;
+        }
+
+        abstract long run() throws Exception;
+    }
+
+    /**
+     * A UI which never prints or blocks on a prompt, and which throws instead of exiting
+     * the JVM.
+     */
+    static class QuietUI extends SimUI {
+        @Override
+        public void print(final String msg) {}
+
+        @Override
+        public void warn(final String msg) {}
+
+        @Override
+        public String prompt(final String msg) {
+            return "";
+        }
+
+        @Override
+        public void exit() {
+            throw new IllegalStateException("fatal error during benchmark");
+        }
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final String[] groups = args.length != 0 ? args : new String[] { "quine.asm",
+            "sample.asm", "quineL-main.asm,quineL-pHex.asm" };
+
+        final File tmp = File.createTempFile("mmxi", "");
+        tmp.delete();
+        tmp.mkdir();
+
+        final List<Benchmark> bench = new ArrayList<Benchmark>();
+        machineBenchmarks(bench);
+        memoryBenchmarks(bench);
+        final List<List<String>> objects = new ArrayList<List<String>>();
+        for (final String group : groups) {
+            final List<String> obj = new ArrayList<String>();
+            for (final String asm : group.split(","))
+                obj.add(new File(tmp, new File(asm).getName().replaceAll("\\.[^.]*$", "")
+                    + ".o").getPath());
+            objects.add(obj);
+            for (int i = 0; i < obj.size(); i++)
+                bench.add(assemble(group.split(",")[i], obj.get(i)));
+        }
+        for (final List<String> obj : objects) {
+            for (final String o : obj)
+                bench.add(parse(o));
+            bench.add(link(obj));
+        }
+
+        for (final Benchmark b : bench)
+            measure(b);
+
+        for (final File f : tmp.listFiles())
+            f.delete();
+        tmp.delete();
+    }
+
+    /**
+     * Runs a benchmark and prints its throughput.
+     * 
+     * @param b
+     *            the benchmark to run
+     */
+    static void measure(final Benchmark b) throws Exception {
+        for (int i = 0; i < WARMUP; i++)
+            sink += b.run();
+        long ops = 0, time = 0;
+        double best = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            final long start = System.nanoTime();
+            final long n = b.run();
+            final long t = System.nanoTime() - start;
+            ops += n;
+            time += t;
+            best = Math.max(best, n * 1e9 / t);
+        }
+        System.out.printf("%-48s %14.0f %s/s (best %.0f)%n", b.name, ops * 1e9 / time,
+            b.unit, best);
+    }
+
+    /**
+     * Creates a machine running a loop of an ADD, LDR, STR and BRnzp at x3000.
+     */
+    static Machine loopMachine(final boolean flat, final String engine) {
+        final Machine m = new Machine();
+        m.ui = new QuietUI();
+        m.setFlatMemory(flat);
+        m.reset((short) 0);
+        if (engine.equals("fast"))
+            m.setALU(new FastInterpreter(m));
+        else if (engine.equals("jit"))
+            m.setALU(new JitInterpreter(m));
+        m.setMemory((short) 0x3000, (short) 0x1021); // ADD R0, R0, #1
+        m.setMemory((short) 0x3001, (short) 0x6580); // LDR R2, R6, #0
+        m.setMemory((short) 0x3002, (short) 0x7581); // STR R2, R6, #1
+        m.setMemory((short) 0x3003, (short) 0x0E00); // BRnzp x3000
+        m.getRegister(6).setValue((short) 0x4000);
+        m.getPCRegister().setValue((short) 0x3000);
+        return m;
+    }
+
+    static void machineBenchmarks(final List<Benchmark> bench) {
+        for (final boolean flat : new boolean[] { false, true }) {
+            final String mem = flat ? "flat" : "paged";
+            final Machine step = loopMachine(flat, "interp");
+            bench.add(new Benchmark("Machine.stepClock (" + mem + ")", "inst") {
+                @Override
+                long run() {
+                    for (int i = 0; i < INSTRUCTIONS; i++)
+                        step.stepClock();
+                    return INSTRUCTIONS;
+                }
+            });
+            for (final String engine : new String[] { "interp", "fast", "jit" }) {
+                final Machine m = loopMachine(flat, engine);
+                bench.add(new Benchmark("ALU.execute (" + engine + ", " + mem + ")",
+                    "inst") {
+                    @Override
+                    long run() {
+                        return m.alu.execute(INSTRUCTIONS);
+                    }
+                });
+            }
+        }
+        final Machine parent = loopMachine(false, "interp");
+        bench.add(new Benchmark("Machine.fork (paged, one page written)", "fork") {
+            @Override
+            long run() {
+                for (int i = 0; i < 10000; i++) {
+                    final Machine child = parent.fork();
+                    child.setMemory((short) 0x3004, (short) i);
+                    sink += child.getMemory((short) 0x3004);
+                }
+                return 10000;
+            }
+        });
+        bench.add(new Benchmark("InstructionParser.parseInstruction", "inst") {
+            @Override
+            long run() {
+                for (int i = 0; i < 0x10000; i++)
+                    sink += InstructionParser.parseInstruction((short) i).hashCode();
+                return 0x10000;
+            }
+        });
+    }
+
+    static void memoryBenchmarks(final List<Benchmark> bench) {
+        final Memory[] mems = { new FillMemory((short) 0),
+                new RandomizedMemory(new XorShift()), new FlatMemory((short) 0) };
+        for (final Memory mem : mems)
+            bench.add(new Benchmark("Memory get/set (" + mem.getClass().getSimpleName()
+                + ")", "word") {
+                @Override
+                long run() {
+                    for (int i = 0; i < 0x10000; i++)
+                        mem.setMemory((short) i, (short) (i * 31));
+                    long sum = 0;
+                    for (int i = 0; i < 0x10000; i++)
+                        sum += mem.getMemory((short) (i * 17));
+                    sink += sum;
+                    return 0x20000;
+                }
+            });
+    }
+
+    /**
+     * Assembles a file once (so that the object file exists for the later benchmarks),
+     * and returns a benchmark which assembles it again. The listing is written next to
+     * the object file, in the temporary directory.
+     */
+    static Benchmark assemble(final String in, final String out) throws Exception {
+        final String listing = out.replaceAll("\\.o$", "") + ".lst";
+        final Benchmark b = new Benchmark("Assembler (" + in + ")", "file") {
+            @Override
+            long run() throws IOException {
+                new Assembler(new QuietUI(), in, out, null, listing);
+                return 1;
+            }
+        };
+        b.run();
+        return b;
+    }
+
+    static Benchmark parse(final String path) throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        final BufferedReader r = new BufferedReader(new FileReader(path));
+        String line;
+        while ((line = r.readLine()) != null)
+            sb.append(line).append('\n');
+        r.close();
+        final String text = sb.toString(), name = new File(path).getName();
+        return new Benchmark("ObjectFile.parse (" + name + ")", "file") {
+            @Override
+            long run() {
+                final ObjectFile o = new ObjectFile(path, name, new BufferedReader(
+                    new StringReader(text)));
+                sink += o.parse().size();
+                return 1;
+            }
+        };
+    }
+
+    static Benchmark link(final List<String> obj) {
+        final Machine m = new Machine();
+        m.ui = new QuietUI();
+        final List<Error> errors = new ArrayList<Error>();
+        final LinkingLoader loader = new LinkingLoader(obj.get(0), m, errors);
+        for (final String o : obj.subList(1, obj.size()))
+            loader.addFile(o, errors);
+        m.ui.printErrors(errors);
+        final Map<String, Short> symbols = new HashMap<String, Short>();
+        String name = "";
+        for (final String o : obj)
+            name += (name.length() == 0 ? "" : ", ") + new File(o).getName();
+        return new Benchmark("LinkingLoader.link (" + name + ")", "link") {
+            @Override
+            long run() {
+                loader.link(errors, symbols);
+                sink += errors.size();
+                return 1;
+            }
+        };
+    }
+}
@@ -37,8 +37,16 @@ public class UI {
         out.println(msg);
     }
 
+    /**
+     * Makes sure that everything printed so far has been written out.
+     */
+    public void flush() {
+        out.flush();
+    }
+
     public String prompt(final String msg) {
         print(msg);
+        flush();
         try {
             return new Scanner(in).nextLine();
         } catch (final NoSuchElementException e) {
@@ -6,8 +6,6 @@ package edu.osu.cse.mmxi.common;
  * 
  */
 public class Utilities {
-    private static long seed = System.nanoTime(), rand = 0;
-
     /**
      * Converts the incoming word argument to a 4-digit padded capital hexadecimal string.
      * 
@@ -34,24 +32,6 @@ public class Utilities {
             return String.format("%X", s);
     }
 
-    /**
-     * Generates a random word, manipulating an internal seed which is initially set to
-     * the system time.
-     * 
-     * @return a random word
-     */
-    public static short randomShort() {
-        if (rand == 0) {
-            seed ^= seed << 21;
-            seed ^= seed >>> 35;
-            seed ^= seed << 4;
-            rand = seed;
-        }
-        final short s = (short) (rand & 0xffffL);
-        rand >>>= 16;
-        return s;
-    }
-
     /**
      * Attempts to parse the given positive short value, accepting hex values (preceded by
      * {@code 0x} or {@code x}), binary values (preceded by {@code 0b}), octal values
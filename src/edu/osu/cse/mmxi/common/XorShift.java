@@ -0,0 +1,46 @@
+package edu.osu.cse.mmxi.common;
+
+/**
+ * A small xorshift pseudo-random number generator producing 16-bit words. Each
+ * {@code XorShift} has its own state, so that separate machines do not share (or race
+ * on) a single seed, and a run can be made reproducible by giving a fixed seed.
+ */
+public class XorShift {
+    private long seed, rand = 0;
+
+    /**
+     * Creates a generator seeded from the system time.
+     */
+    public XorShift() {
+        this(System.nanoTime());
+    }
+
+    /**
+     * Creates a generator with a fixed seed, which will always produce the same sequence
+     * of words.
+     * 
+     * @param _seed
+     *            the initial seed; since an all-zero state would only produce zeros, a
+     *            seed of zero is replaced with a fixed nonzero value
+     */
+    public XorShift(final long _seed) {
+        seed = _seed == 0 ? 0x2545F4914F6CDD1DL : _seed;
+    }
+
+    /**
+     * Generates a random word.
+     * 
+     * @return a random word
+     */
+    public short nextShort() {
+        if (rand == 0) {
+            seed ^= seed << 21;
+            seed ^= seed >>> 35;
+            seed ^= seed << 4;
+            rand = seed;
+        }
+        final short s = (short) (rand & 0xffffL);
+        rand >>>= 16;
+        return s;
+    }
+}
@@ -0,0 +1,54 @@
+package edu.osu.cse.mmxi.common.error;
+
+/**
+ * The errors found while reading an object module, shared by the assembler and the
+ * simulator's loaders.
+ */
+public enum ObjectCodes implements ErrorCodes {
+    // IO errors
+    IO_BAD_READ(101, "Failed to read file", ErrorLevels.FATAL),
+
+    // address errors
+    ADDR_OUT_BOUNDS(200, "Text address out of bounds", ErrorLevels.FATAL),
+
+    ADDR_EXEC_OUT_BOUNDS(201, "Execution address out of bounds", ErrorLevels.FATAL),
+
+    // parser errors
+    PARSE_EXECPTION(300, "Parsing exception", ErrorLevels.WARN),
+
+    PARSE_NO_HEADER(302, "Object File did not contain a Header record", ErrorLevels.FATAL),
+
+    PARSE_HEADER_FIRST(305, "The first record must be a Header record", ErrorLevels.FATAL),
+
+    PARSE_BAD_TEXT(399, "Malformed record", ErrorLevels.FATAL);
+
+    private int         code;
+    private String      str;
+    private ErrorLevels level;
+
+    ObjectCodes(final int code, final String str, final ErrorLevels level) {
+        this.str = str;
+        this.code = code;
+        this.level = level;
+    }
+
+    @Override
+    public String getMsg() {
+        return str;
+    }
+
+    @Override
+    public int getCode() {
+        return code;
+    }
+
+    @Override
+    public ErrorLevels getLevel() {
+        return level;
+    }
+
+    @Override
+    public String toString() {
+        return level + " " + code + (str == null ? "" : ": " + str);
+    }
+}
@@ -0,0 +1,262 @@
+package edu.osu.cse.mmxi.common.object;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.osu.cse.mmxi.common.Utilities;
+
+/**
+ * <p>
+ * A compact binary form of an object file. The text is stored as blocks of words at
+ * consecutive addresses, so that a block can be read with a single bulk transfer and
+ * stored into memory with another, and only the words which need relocation are listed
+ * separately. The source line comments of the text format are not kept.
+ * </p>
+ * 
+ * <p>
+ * The Assembler writes this format by giving the records of the module to a
+ * {@code BinaryObjectFile} and then calling {@link #write(OutputStream)}. The
+ * LinkingLoader recognizes a binary object file by its first four bytes, and reads it
+ * with {@link #read(File, ObjectFile)}.
+ * </p>
+ * 
+ * <p>
+ * All numbers are big-endian, and counts are unsigned.
+ * </p>
+ * 
+ * <pre>
+ *  magic     4 bytes  "MXO1"
+ *  header    6 bytes  segment name, padded with spaces
+ *            2 bytes  beginning address
+ *            2 bytes  segment length
+ *  symbols   2 bytes  count, then for each symbol:
+ *            1 byte   kind ('G', 'L' or 'A', as in the text format)
+ *            1 byte   name length <i>n</i>, then <i>n</i> bytes of name
+ *            2 bytes  value
+ *  blocks    2 bytes  count, then for each block:
+ *            2 bytes  address of the first word
+ *            2 bytes  word count <i>n</i>, then <i>n</i> words
+ *            2 bytes  relocation count <i>r</i>, then for each relocated word:
+ *            2 bytes  index of the word in the block
+ *            1 byte   0 to relocate the low 9 bits, 1 to relocate the whole word
+ *            1 byte   external name length <i>n</i> (0 for none), then <i>n</i> bytes
+ *  exec      1 byte   0 if there is no exec record, 1 if absolute, 2 if relative
+ *            2 bytes  exec address
+ * </pre>
+ */
+public class BinaryObjectFile implements ObjectRecords {
+    /**
+     * The first four bytes of a binary object file, "MXO1".
+     */
+    public static final int             MAGIC   = 0x4D584F31;
+
+    private String                      segName = "";
+    private short                       begin, length, exec;
+    private byte                        execKind;
+    private int                         symbolCount;
+    private final ByteArrayOutputStream symbols = new ByteArrayOutputStream();
+    private final List<Text>            text    = new ArrayList<Text>();
+
+    @Override
+    public void addHeader(final String seg, final short _begin, final short _length) {
+        segName = seg;
+        begin = _begin;
+        length = _length;
+    }
+
+    @Override
+    public void addText(final short address, final short value, final int m,
+        final String ext, final int sline) {
+        text.add(new Text(text.size(), sline, address, value, m, ext));
+    }
+
+    @Override
+    public void addSymbol(final char kind, final String symb, final short value) {
+        final DataOutputStream out = new DataOutputStream(symbols);
+        try {
+            out.writeByte(kind);
+            writeString(out, symb);
+            out.writeShort(value);
+        } catch (final IOException e) {
+            throw new AssertionError(e);
+        }
+        symbolCount++;
+    }
+
+    @Override
+    public void addExec(final short address, final boolean relative) {
+        exec = address;
+        execKind = (byte) (relative ? 2 : 1);
+    }
+
+    /**
+     * Writes the module in the binary format.
+     * 
+     * @param stream
+     *            the stream to write to; it is not closed
+     * @throws IOException
+     */
+    public void write(final OutputStream stream) throws IOException {
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(MAGIC);
+        out.writeBytes(Utilities.padRight(segName, 6, ' ').substring(0, 6));
+        out.writeShort(begin);
+        out.writeShort(length);
+        out.writeShort(symbolCount);
+        symbols.writeTo(out);
+
+        final List<Integer> starts = new ArrayList<Integer>();
+        for (int i = 0; i < text.size(); i++)
+            if (i == 0
+                || text.get(i).getAddress() != (short) (text.get(i - 1).getAddress() + 1))
+                starts.add(i);
+        starts.add(text.size());
+        out.writeShort(starts.size() - 1);
+        for (int b = 0; b < starts.size() - 1; b++) {
+            final List<Text> block = text.subList(starts.get(b), starts.get(b + 1));
+            out.writeShort(block.get(0).getAddress());
+            out.writeShort(block.size());
+            int relocs = 0;
+            for (final Text t : block) {
+                out.writeShort(t.getValue());
+                if (t.getMask() != 0)
+                    relocs++;
+            }
+            out.writeShort(relocs);
+            for (int i = 0; i < block.size(); i++)
+                if (block.get(i).getMask() != 0) {
+                    out.writeShort(i);
+                    out.writeByte(block.get(i).getMask() == -1 ? 1 : 0);
+                    writeString(out, block.get(i).getExternal());
+                }
+        }
+
+        out.writeByte(execKind);
+        out.writeShort(exec);
+        out.flush();
+    }
+
+    /**
+     * Writes the module to a binary object file.
+     * 
+     * @param path
+     *            the path of the file
+     * @throws IOException
+     */
+    public void write(final String path) throws IOException {
+        final FileOutputStream out = new FileOutputStream(path);
+        try {
+            write(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writeString(final DataOutputStream out, final String s)
+        throws IOException {
+        final String str = s == null ? "" : s;
+        out.writeByte(str.length());
+        out.writeBytes(str);
+    }
+
+    /**
+     * Tests whether a file is a binary object file, by its first four bytes.
+     * 
+     * @param file
+     *            the file
+     * @return whether it starts with {@link #MAGIC}
+     */
+    public static boolean isBinary(final File file) {
+        try {
+            final DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                return in.readInt() == MAGIC;
+            } finally {
+                in.close();
+            }
+        } catch (final IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads a binary object file into an ObjectFile. The whole file is read into a
+     * buffer through its channel, and the words of each block are taken from the buffer
+     * in one bulk transfer. Errors in the records themselves (such as a block out of the
+     * segment's bounds) are reported by {@link ObjectFile#parse()} as usual.
+     * 
+     * @param file
+     *            the binary object file
+     * @param ofile
+     *            the ObjectFile to add the records to
+     * @throws IOException
+     *             if the file cannot be read or is not in the binary format
+     */
+    public static void read(final File file, final ObjectFile ofile) throws IOException {
+        final FileChannel ch = new FileInputStream(file).getChannel();
+        final ByteBuffer buf;
+        try {
+            buf = ByteBuffer.allocate((int) ch.size());
+            while (buf.hasRemaining())
+                if (ch.read(buf) < 0)
+                    throw new IOException("unexpected end of file");
+        } finally {
+            ch.close();
+        }
+        buf.flip();
+
+        try {
+            if (buf.getInt() != MAGIC)
+                throw new IOException("not a binary object file");
+            ofile.addHeader(readString(buf, 6), buf.getShort(), buf.getShort());
+            for (int i = buf.getShort() & 0xFFFF; i > 0; i--)
+                ofile.addSymbol((char) buf.get(), readString(buf, buf.get() & 0xFF),
+                    buf.getShort());
+
+            final int count = buf.getShort() & 0xFFFF;
+            for (int b = 0; b < count; b++) {
+                final short address = buf.getShort();
+                final short[] words = new short[buf.getShort() & 0xFFFF];
+                buf.asShortBuffer().get(words);
+                buf.position(buf.position() + 2 * words.length);
+                final int[] relocs = new int[buf.getShort() & 0xFFFF];
+                final byte[] m = new byte[relocs.length];
+                final String[] ext = new String[relocs.length];
+                for (int i = 0; i < relocs.length; i++) {
+                    relocs[i] = buf.getShort() & 0xFFFF;
+                    m[i] = buf.get();
+                    final int n = buf.get() & 0xFF;
+                    ext[i] = n == 0 ? null : readString(buf, n);
+                    if (relocs[i] >= words.length)
+                        throw new IOException("relocation outside of block " + (b + 1));
+                }
+                ofile.addBlock(new TextBlock(b + 1, address, words, relocs, m, ext));
+            }
+
+            final byte kind = buf.get();
+            final short address = buf.getShort();
+            if (kind != 0)
+                ofile.addExec(address, kind == 2);
+        } catch (final BufferUnderflowException e) {
+            throw new IOException("unexpected end of file");
+        }
+    }
+
+    private static String readString(final ByteBuffer buf, final int n) {
+        final byte[] b = new byte[n];
+        buf.get(b);
+        return new String(b);
+    }
+}
@@ -1,4 +1,4 @@
-package edu.osu.cse.mmxi.sim.loader.parser;
+package edu.osu.cse.mmxi.common.object;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -14,8 +14,8 @@ import java.util.regex.Pattern;
 import edu.osu.cse.mmxi.common.Location;
 import edu.osu.cse.mmxi.common.Utilities;
 import edu.osu.cse.mmxi.common.error.Error;
+import edu.osu.cse.mmxi.common.error.ObjectCodes;
 import edu.osu.cse.mmxi.common.error.ParseException;
-import edu.osu.cse.mmxi.sim.error.SimCodes;
 
 /**
  * <p>
@@ -67,8 +67,15 @@ import edu.osu.cse.mmxi.sim.error.SimCodes;
  * file. The failures are recorded and get reported as a group of all the parse errors in
  * the file.
  * </p>
+ * 
+ * <p>
+ * An ObjectFile can also be built in memory, record by record, by the Assembler (see
+ * {@link #addHeader}, {@link #addText}, {@link #addSymbol} and {@link #addExec}). The
+ * records go through the same checks as parsed ones, and {@link #parse()} then only
+ * reports the errors found.
+ * </p>
  */
-public class ObjectFile {
+public class ObjectFile implements ObjectRecords {
     private static final Pattern        ppRegex      = Pattern.compile("#![LS][^!]*!");
 
     private final BufferedReader        reader;
@@ -80,6 +87,9 @@ public class ObjectFile {
     /** [Bits in Hex Rep.] | 7: page | 9: address | */
     private final List<Text>            text         = new ArrayList<Text>();
 
+    /** Blocks of words, from a binary object file */
+    private final List<TextBlock>       blocks       = new ArrayList<TextBlock>();
+
     /** [Bits in Hex Rep.] | 4: initial exec address | */
 
     /** [Bits in Hex Rep.] | 6: name | 4: begin address | 4: segment length | */
@@ -107,6 +117,19 @@ public class ObjectFile {
         this.name = name.replaceAll("[^0-9A-Za-z_]", "");
     }
 
+    /**
+     * Creates an empty ObjectFile, which is filled in by calling the {@code add} methods
+     * for each record instead of parsing a stream.
+     * 
+     * @param path
+     *            the path of the source of the object module
+     * @param name
+     *            the file name of the source, from which the segment's file name is made
+     */
+    public ObjectFile(final String path, final String name) {
+        this(path, name, null);
+    }
+
     /**
      * Reads the stream line by line, parsing the line by its appropriate format, and
      * tokenizing the results. The tokenized data is stored in this class, and a list of
@@ -117,12 +140,13 @@ public class ObjectFile {
     public List<Error> parse() {
 
         String line = null;
-        try {
-            line = reader.readLine();
-        } catch (final IOException e) {
-            errors.add(new Error("IO error while reading first line: " + e.getMessage(),
-                SimCodes.IO_BAD_READ));
-        }
+        if (reader != null)
+            try {
+                line = reader.readLine();
+            } catch (final IOException e) {
+                errors.add(new Error("IO error while reading first line: "
+                    + e.getMessage(), ObjectCodes.IO_BAD_READ));
+            }
 
         while (line != null) {
             tokensizeLine(line);
@@ -132,15 +156,70 @@ public class ObjectFile {
                 line = reader.readLine();
             } catch (final IOException e) {
                 errors.add(new Error("IO error while reading line " + lineNumber + ": "
-                    + e.getMessage(), SimCodes.IO_BAD_READ));
+                    + e.getMessage(), ObjectCodes.IO_BAD_READ));
             }
         }
 
         if (segName == null)
-            errors.add(new Error(SimCodes.PARSE_NO_HEADER));
+            errors.add(new Error(ObjectCodes.PARSE_NO_HEADER));
         return errors;
     }
 
+    @Override
+    public void addHeader(final String seg, final short begin, final short length) {
+        makeHeader(seg, begin, length);
+        lineNumber++;
+    }
+
+    @Override
+    public void addText(final short address, final short value, final int m,
+        final String ext, final int sline) {
+        sourceLine = sline;
+        try {
+            text.add(makeText(address, value, m, ext));
+        } catch (final ParseException e) {
+            errors.add(e.getError());
+        }
+        lineNumber++;
+    }
+
+    /**
+     * Adds a block of words at consecutive addresses, as read from a binary object file.
+     * 
+     * @param block
+     *            the block
+     */
+    public void addBlock(final TextBlock block) {
+        for (int i = 0; i < block.getRelocCount(); i++)
+            if (block.getRelocExternal(i) != null)
+                externals.add(block.getRelocExternal(i));
+        final int length = block.getWords().length;
+        if (segName == null)
+            errors.add(new Error(lineNumber, ObjectCodes.PARSE_HEADER_FIRST));
+        else if ((block.getAddress() - beginAddress & 0xffff) + length > (lengthOffset
+            & 0xffff))
+            errors.add(new Error(lineNumber, ObjectCodes.ADDR_OUT_BOUNDS));
+        else
+            blocks.add(block);
+        lineNumber++;
+    }
+
+    @Override
+    public void addSymbol(final char kind, final String symb, final short value) {
+        makeSymbol(kind, symb, value);
+        lineNumber++;
+    }
+
+    @Override
+    public void addExec(final short address, final boolean relative) {
+        try {
+            makeExec(address, relative);
+        } catch (final ParseException e) {
+            errors.add(e.getError());
+        }
+        lineNumber++;
+    }
+
     /**
      * Converts a single line of text containing an ObjectFile Record into a Token, and
      * updates the state of the parser with the information.
@@ -169,7 +248,7 @@ public class ObjectFile {
                 else if (token.matches("[eE][0-9A-Fa-f]{4}(M1)?"))
                     parseExec(token);
                 else
-                    errors.add(new Error(lineNumber, token, SimCodes.PARSE_BAD_TEXT));
+                    errors.add(new Error(lineNumber, token, ObjectCodes.PARSE_BAD_TEXT));
             } catch (final ParseException e) {
                 errors.add(e.getError());
             }
@@ -184,7 +263,7 @@ public class ObjectFile {
                 errors
                     .add(new Error(lineNumber,
                         "could not read LINE preprocessor command",
-                        SimCodes.PARSE_EXECPTION));
+                        ObjectCodes.PARSE_EXECPTION));
             }
             break;
         case 'S':
@@ -193,21 +272,21 @@ public class ObjectFile {
                 errors
                     .add(new Error(lineNumber,
                         "could not read SYMB preprocessor command",
-                        SimCodes.PARSE_EXECPTION));
+                        ObjectCodes.PARSE_EXECPTION));
             else {
                 final String symb = token.substring(3, colon);
                 final boolean bad = !symb.matches("[A-Za-z0-9_]+")
                     || Character.isDigit(symb.charAt(0))
                     || symb.toLowerCase().matches("pc|r[0-7]");
                 if (bad)
-                    errors.add(new Error(lineNumber,
-                        "invalid symbol name '" + symb + "'", SimCodes.PARSE_EXECPTION));
+                    errors.add(new Error(lineNumber, "invalid symbol name '" + symb
+                        + "'", ObjectCodes.PARSE_EXECPTION));
                 final Short v = Utilities.parseShort(token.substring(colon + 1,
                     token.length() - 1));
                 if (v == null)
                     errors.add(new Error(lineNumber, "'"
                         + token.substring(colon + 1, token.length() - 1)
-                        + "' is not a number", SimCodes.PARSE_EXECPTION));
+                        + "' is not a number", ObjectCodes.PARSE_EXECPTION));
                 if (!bad && v != null)
                     symbols.put(name + "." + symb, new Location(false, v));
             }
@@ -226,20 +305,31 @@ public class ObjectFile {
     private Text parseTextLine(final String line) throws ParseException {
         final short addr = (short) Integer.parseInt(line.substring(1, 5), 16), val = (short) Integer
             .parseInt(line.substring(5, 9), 16);
-        Text t;
         if (line.length() <= 9)
-            t = new Text(lineNumber, sourceLine, addr, val, -1, null);
+            return makeText(addr, val, -1, null);
         else if (line.charAt(9) == 'M')
-            t = new Text(lineNumber, sourceLine, addr, val, line.charAt(10) - '0', null);
-        else {
-            externals.add(line.substring(11));
-            t = new Text(lineNumber, sourceLine, addr, val, line.charAt(10) - '0',
-                line.substring(11));
-        }
+            return makeText(addr, val, line.charAt(10) - '0', null);
+        else
+            return makeText(addr, val, line.charAt(10) - '0', line.substring(11));
+    }
+
+    /**
+     * Makes a Text token, and checks that it follows the header and is within the
+     * segment.
+     * 
+     * @return the token
+     * @throws ParseException
+     *             if the record is out of place.
+     */
+    private Text makeText(final short addr, final short val, final int m,
+        final String ext) throws ParseException {
+        if (ext != null)
+            externals.add(ext);
+        final Text t = new Text(lineNumber, sourceLine, addr, val, m, ext);
         if (segName == null)
-            throw new ParseException(lineNumber, SimCodes.PARSE_HEADER_FIRST);
+            throw new ParseException(lineNumber, ObjectCodes.PARSE_HEADER_FIRST);
         if (!isWithinBounds(addr))
-            throw new ParseException(lineNumber, SimCodes.ADDR_OUT_BOUNDS);
+            throw new ParseException(lineNumber, ObjectCodes.ADDR_OUT_BOUNDS);
         return t;
     }
 
@@ -253,13 +343,14 @@ public class ObjectFile {
      */
     private void parseSymbolLine(final String line) {
         final int eq = line.indexOf('=');
-        String symb = line.substring(1, eq);
-        if (line.charAt(0) != 'G')
+        makeSymbol(line.charAt(0), line.substring(1, eq),
+            (short) Integer.parseInt(line.substring(eq + 1, eq + 5), 16));
+    }
+
+    private void makeSymbol(final char kind, String symb, final short value) {
+        if (kind != 'G')
             symb = name + "." + symb;
-        symbols.put(
-            symb,
-            new Location(line.charAt(0) != 'A', (short) Integer.parseInt(
-                line.substring(eq + 1, eq + 5), 16)));
+        symbols.put(symb, new Location(kind != 'A', value));
     }
 
     /**
@@ -271,10 +362,16 @@ public class ObjectFile {
      *             if the line does not conform to the format.
      */
     private Header parseHeader(final String line) {
-        segName = line.substring(1, 7).trim();
+        return makeHeader(line.substring(1, 7),
+            (short) Integer.parseInt(line.substring(7, 11), 16),
+            (short) Integer.parseInt(line.substring(11), 16));
+    }
+
+    private Header makeHeader(final String seg, final short begin, final short length) {
+        segName = seg.trim();
 
-        beginAddress = (short) Integer.parseInt(line.substring(7, 11), 16);
-        lengthOffset = (short) Integer.parseInt(line.substring(11), 16);
+        beginAddress = begin;
+        lengthOffset = length;
         return new Header(lineNumber, name, beginAddress, lengthOffset);
     }
 
@@ -289,12 +386,16 @@ public class ObjectFile {
     private void parseExec(final String line) throws ParseException {
         // It's not necessary to check for a good string here, because we
         // already have, with the pattern matching earlier.
-        final short addr = (short) Integer.parseInt(line.substring(1, 5), 16);
+        makeExec((short) Integer.parseInt(line.substring(1, 5), 16), line.length() > 5);
+    }
+
+    private void makeExec(final short addr, final boolean relative)
+        throws ParseException {
         if (segName == null)
-            throw new ParseException(lineNumber, SimCodes.PARSE_HEADER_FIRST);
+            throw new ParseException(lineNumber, ObjectCodes.PARSE_HEADER_FIRST);
         if (!isWithinBounds(addr))
-            throw new ParseException(lineNumber, SimCodes.ADDR_EXEC_OUT_BOUNDS);
-        symbols.put(segName, new Location(line.length() > 5, addr));
+            throw new ParseException(lineNumber, ObjectCodes.ADDR_EXEC_OUT_BOUNDS);
+        symbols.put(segName, new Location(relative, addr));
     }
 
     /**
@@ -306,6 +407,15 @@ public class ObjectFile {
         return text;
     }
 
+    /**
+     * After reading a binary object file, returns the list of blocks of words.
+     * 
+     * @return a List of TextBlocks
+     */
+    public List<TextBlock> getParsedBlocks() {
+        return blocks;
+    }
+
     public Map<String, Location> getParsedSymbols() {
         return symbols;
     }
@@ -0,0 +1,61 @@
+package edu.osu.cse.mmxi.common.object;
+
+/**
+ * Receives the records of an object module as they are produced, without going through
+ * the text format: first the header, then the symbols and text, and last the exec
+ * record. Implemented by {@link ObjectFile}, to build a module in memory, and by
+ * {@link BinaryObjectFile}, to write a binary object file.
+ */
+public interface ObjectRecords {
+    /**
+     * Adds a Header Record.
+     * 
+     * @param seg
+     *            the segment name
+     * @param begin
+     *            the beginning address of the segment
+     * @param length
+     *            the length of the segment
+     */
+    public void addHeader(String seg, short begin, short length);
+
+    /**
+     * Adds a Text Record.
+     * 
+     * @param address
+     *            the address of the word
+     * @param value
+     *            the value of the word
+     * @param m
+     *            0 to relocate the low 9 bits, 1 to relocate the whole word, or -1 if the
+     *            word is absolute
+     * @param ext
+     *            the external symbol the word is relative to, or {@code null}
+     * @param sline
+     *            the line of the assembly source, or -1 if none
+     */
+    public void addText(short address, short value, int m, String ext, int sline);
+
+    /**
+     * Adds a Symbol Record.
+     * 
+     * @param kind
+     *            'G' for a global symbol, 'L' for a local relative symbol, or 'A' for a
+     *            local absolute symbol
+     * @param symb
+     *            the symbol name
+     * @param value
+     *            the value of the symbol
+     */
+    public void addSymbol(char kind, String symb, short value);
+
+    /**
+     * Adds an Exec Record.
+     * 
+     * @param address
+     *            the address execution begins at
+     * @param relative
+     *            whether the address is relative to the segment
+     */
+    public void addExec(short address, boolean relative);
+}
@@ -0,0 +1,73 @@
+package edu.osu.cse.mmxi.common.object;
+
+import edu.osu.cse.mmxi.common.Utilities;
+
+/**
+ * A run of words at consecutive addresses, as read from a binary object file. Most words
+ * are stored as they are; the few which need relocation are listed separately, with the
+ * same meaning as the M and X parts of a Text record.
+ */
+public class TextBlock extends Token {
+
+    private final short    address;
+    private final short[]  words;
+    private final int[]    relocs;
+    private final byte[]   m;
+    private final String[] ext;
+
+    /**
+     * @param line
+     *            the index of the block in the file
+     * @param address
+     *            the address of the first word
+     * @param words
+     *            the words of the block
+     * @param relocs
+     *            the indices of the words which need relocation
+     * @param m
+     *            for each relocated word, 0 to relocate the low 9 bits or 1 to relocate
+     *            the whole word
+     * @param ext
+     *            for each relocated word, the external symbol it is relative to, or
+     *            {@code null}
+     */
+    public TextBlock(final int line, final short address, final short[] words,
+        final int[] relocs, final byte[] m, final String[] ext) {
+        super(line);
+        this.address = address;
+        this.words = words;
+        this.relocs = relocs;
+        this.m = m;
+        this.ext = ext;
+    }
+
+    public short getAddress() {
+        return address;
+    }
+
+    public short[] getWords() {
+        return words;
+    }
+
+    public int getRelocCount() {
+        return relocs.length;
+    }
+
+    public int getRelocIndex(final int i) {
+        return relocs[i];
+    }
+
+    public short getRelocMask(final int i) {
+        return (short) (m[i] == 1 ? -1 : 0x1FF);
+    }
+
+    public String getRelocExternal(final int i) {
+        return ext[i];
+    }
+
+    @Override
+    public String toString() {
+        return "TextBlock, " + super.toString() + ": (0x" + Utilities.uShortToHex(address)
+            + ", " + words.length + " words)";
+    }
+}
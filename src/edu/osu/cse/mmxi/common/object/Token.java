@@ -1,4 +1,4 @@
-package edu.osu.cse.mmxi.sim.loader.parser;
+package edu.osu.cse.mmxi.common.object;
 
 public class Token {
     protected final int lineNumber, sourceLineNumber;
@@ -4,6 +4,7 @@ import static org.junit.Assert.assertEquals;
 
 import org.junit.Test;
 
+import edu.osu.cse.mmxi.asm.AssemblyContext;
 import edu.osu.cse.mmxi.asm.Symbol;
 import edu.osu.cse.mmxi.asm.symb.ArithmeticParser;
 import edu.osu.cse.mmxi.asm.symb.SymbolExpression;
@@ -58,7 +59,7 @@ public class ArithmeticParserTest {
 
     @Test
     public void testSimplify() throws ParseException {
-        Symbol.symbs.clear();
+        AssemblyContext.get().symbs.clear();
         SymbolExpression se = ArithmeticParser.parse("x+1-(y+2-3)-z-z");
         assertEquals("x + x1 - (y + x2 - x3) - z - z", se.toString());
         se = ArithmeticParser.simplify(se);
@@ -0,0 +1,183 @@
+package edu.osu.cse.mmxi.junit.asm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.osu.cse.mmxi.asm.Assembler;
+import edu.osu.cse.mmxi.asm.io.IO;
+import edu.osu.cse.mmxi.common.Location;
+import edu.osu.cse.mmxi.common.UI;
+import edu.osu.cse.mmxi.common.error.Error;
+import edu.osu.cse.mmxi.common.object.BinaryObjectFile;
+import edu.osu.cse.mmxi.common.object.ObjectFile;
+import edu.osu.cse.mmxi.common.object.Text;
+import edu.osu.cse.mmxi.sim.Simulator;
+import edu.osu.cse.mmxi.sim.loader.LinkingLoader;
+import edu.osu.cse.mmxi.sim.machine.Machine;
+
+public class ObjectModuleTest {
+    private static final String SOURCE = "Prog    .ORIG\n" + "        .ENT Start\n"
+                                           + "Start   LD R0,=#7\n"
+                                           + "        ADD R0,R0,#1\n"
+                                           + "        ST R0,Value\n"
+                                           + "        LEA R1,Value\n"
+                                           + "        TRAP x25\n"
+                                           + "Value   .FILL Start\n"
+                                           + "Abs     .EQU x1234\n"
+                                           + "        .END Start\n";
+
+    /**
+     * Assembles the same source into an object file and into memory, and checks that the
+     * module has the same records as the parsed object file.
+     */
+    @Test
+    public void sameAsFileTest() throws IOException {
+        final File dir = File.createTempFile("mmxi", "");
+        dir.delete();
+        dir.mkdir();
+        final File asm = new File(dir, "prog.asm"), obj = new File(dir, "prog.o");
+        IO.writeFile(asm.getPath(), SOURCE);
+        new Assembler(new UI(), asm.getPath(), obj.getPath(), null, new File(dir,
+            "prog.lst").getPath());
+
+        final BufferedReader r = new BufferedReader(new FileReader(obj));
+        final ObjectFile file = new ObjectFile(obj.getPath(), obj.getName(), r);
+        assertEquals(0, file.parse().size());
+        r.close();
+        final ObjectFile module = new ObjectFile(asm.getPath(), asm.getName());
+        new Assembler(new UI(), asm.getPath(), module);
+        assertEquals(0, module.parse().size());
+
+        assertEquals(file.getSegName(), module.getSegName());
+        assertEquals(file.getFileName(), module.getFileName());
+        assertEquals(file.getSize(), module.getSize());
+        assertEquals(file.getParsedSymbols().keySet(), module.getParsedSymbols().keySet());
+        for (final String symb : file.getParsedSymbols().keySet()) {
+            final Location a = file.getParsedSymbols().get(symb), b = module
+                .getParsedSymbols().get(symb);
+            assertEquals(a.address, b.address);
+            assertEquals(a.isRelative, b.isRelative);
+        }
+        assertEquals(file.getParsedExternals(), module.getParsedExternals());
+        assertEquals(file.getParsedTexts().size(), module.getParsedTexts().size());
+        for (int i = 0; i < file.getParsedTexts().size(); i++) {
+            final Text a = file.getParsedTexts().get(i), b = module.getParsedTexts().get(i);
+            assertEquals(a.getAddress(), b.getAddress());
+            assertEquals(a.getValue(), b.getValue());
+            assertEquals(a.getMask(), b.getMask());
+            assertEquals(a.getExternal(), b.getExternal());
+            assertEquals(a.getSLine(), b.getSLine());
+        }
+
+        for (final File f : dir.listFiles())
+            f.delete();
+        dir.delete();
+    }
+
+    /**
+     * Assembles the linking loader's sample programs, and checks that the object files
+     * are the same as those checked in beside them, which were written by the assembler
+     * when pass 2 re-read the source file instead of using the lines kept by pass 1.
+     */
+    @Test
+    public void sampleSourcesTest() throws IOException {
+        final File[] dirs = new File("test/LL").listFiles();
+        assertTrue(dirs != null);
+        for (final File dir : dirs) {
+            final File asm = new File(dir, "main.asm"), expected = new File(dir, "main.o");
+            if (!asm.exists() || !expected.exists())
+                continue;
+            final File obj = File.createTempFile("mmxi", ".o");
+            final File lst = File.createTempFile("mmxi", ".lst");
+            new Assembler(new UI(), asm.getPath(), obj.getPath(), null, lst.getPath());
+            assertEquals(asm.getPath(), readLines(expected), readLines(obj));
+            obj.delete();
+            lst.delete();
+        }
+    }
+
+    private static List<String> readLines(final File f) throws IOException {
+        final List<String> lines = new ArrayList<String>();
+        final BufferedReader r = new BufferedReader(new FileReader(f));
+        String line;
+        while ((line = r.readLine()) != null)
+            lines.add(line);
+        r.close();
+        return lines;
+    }
+
+    /**
+     * Assembles a source file in memory for the LinkingLoader, and runs it.
+     */
+    @Test
+    public void assembleAndRunTest() throws IOException {
+        final File asm = File.createTempFile("mmxi", ".asm");
+        IO.writeFile(asm.getPath(), SOURCE);
+        final Machine m = new Machine();
+        m.reset((short) 0);
+        final List<Error> errors = new ArrayList<Error>();
+        final LinkingLoader loader = new LinkingLoader(m);
+        Simulator.load(loader, asm.getPath(), new UI(), errors);
+        asm.delete();
+        assertEquals(0, errors.size());
+        loader.setIPLA((short) 0x3000);
+        loader.link(errors, new HashMap<String, Short>());
+        assertEquals(0, errors.size());
+        assertEquals(0x3000, m.getPCRegister().getValue());
+        while (!m.hasHalted())
+            m.stepClock();
+        assertEquals(8, m.getRegister(0).getValue());
+        assertEquals(8, m.getMemory(m.getRegister(1).getValue()));
+    }
+
+    /**
+     * Assembles the same source into a text and a binary object file, and checks that
+     * both load the same words into memory.
+     */
+    @Test
+    public void binaryLoadTest() throws IOException {
+        final File dir = File.createTempFile("mmxi", "");
+        dir.delete();
+        dir.mkdir();
+        final File asm = new File(dir, "prog.asm"), lst = new File(dir, "prog.lst");
+        final File text = new File(dir, "text.o"), bin = new File(dir, "bin.o");
+        IO.writeFile(asm.getPath(), SOURCE);
+        new Assembler(new UI(), asm.getPath(), text.getPath(), null, lst.getPath());
+        new Assembler(new UI(), asm.getPath(), bin.getPath(), null, lst.getPath(), true);
+        assertFalse(BinaryObjectFile.isBinary(text));
+        assertTrue(BinaryObjectFile.isBinary(bin));
+        assertTrue(bin.length() < text.length());
+
+        final Machine a = load(text), b = load(bin);
+        assertEquals(a.getPCRegister().getValue(), b.getPCRegister().getValue());
+        for (int i = 0x3000; i < 0x3010; i++)
+            assertEquals(a.getMemory((short) i), b.getMemory((short) i));
+
+        for (final File f : dir.listFiles())
+            f.delete();
+        dir.delete();
+    }
+
+    private static Machine load(final File obj) {
+        final Machine m = new Machine();
+        m.reset((short) 0);
+        final List<Error> errors = new ArrayList<Error>();
+        final LinkingLoader loader = new LinkingLoader(obj.getPath(), m, errors);
+        assertEquals(0, errors.size());
+        loader.setIPLA((short) 0x3000);
+        loader.link(errors, new HashMap<String, Short>());
+        assertEquals(0, errors.size());
+        return m;
+    }
+}
@@ -0,0 +1,56 @@
+package edu.osu.cse.mmxi.junit.sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import edu.osu.cse.mmxi.sim.BreakCondition;
+import edu.osu.cse.mmxi.sim.machine.Machine;
+
+public class BreakConditionTest {
+
+    private final Machine            m       = new Machine();
+    private final Map<String, Short> symbols = new HashMap<String, Short>();
+
+    private boolean test(final String text) {
+        return BreakCondition.compile(text, symbols).test(m);
+    }
+
+    @Test
+    public void compareTest() {
+        m.reset((short) 0);
+        m.getRegister(1).setValue((short) -3);
+        m.getRegister(6).setValue((short) 0x4000);
+        m.setMemory((short) 0x4001, (short) 0x10);
+        symbols.put("main.count", (short) 0x4001);
+
+        assertTrue(test("r1 == #-3"));
+        assertTrue(test("r1 < 0"));
+        assertFalse(test("r1 >= r0"));
+        assertTrue(test("[r6+1] == x10"));
+        assertTrue(test("[count] == 16 && r6-x4000 == 0"));
+        assertTrue(test("r0 != 0 || [ main.count ] <= x10"));
+        assertFalse(test("r0 != 0 || r1 > 0 && r6 != 0"));
+
+        m.setMemory((short) 0x4001, (short) 0);
+        assertFalse(test("[r6+1] == x10"));
+    }
+
+    @Test
+    public void malformedTest() {
+        assertNull(BreakCondition.compile("", symbols));
+        assertNull(BreakCondition.compile("r0 ==", symbols));
+        assertNull(BreakCondition.compile("r0 = 1", symbols));
+        assertNull(BreakCondition.compile("[r0 == 1", symbols));
+        assertNull(BreakCondition.compile("nosuch == 1", symbols));
+        assertNull(BreakCondition.compile("r0 == 1 &&", symbols));
+        assertNull(BreakCondition.compile("r0 == 1 !", symbols));
+        assertEquals("r0 == 1", BreakCondition.compile(" r0 == 1 ", symbols).toString());
+    }
+}
@@ -0,0 +1,170 @@
+package edu.osu.cse.mmxi.junit.sim;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.BitSet;
+
+import org.junit.Test;
+
+import edu.osu.cse.mmxi.sim.machine.CheckpointStream;
+import edu.osu.cse.mmxi.sim.machine.Machine;
+
+public class CheckpointTest {
+    private static final int PAGE = 2 + 0x400, HEADER = 32;
+
+    /**
+     * Creates a machine running a loop which counts in R0 and stores the count at x4000.
+     */
+    private static Machine counter() {
+        final Machine m = new Machine();
+        m.reset((short) 0);
+        m.setMemory((short) 0x3000, (short) 0x1021); // ADD R0, R0, #1
+        m.setMemory((short) 0x3001, (short) 0x7180); // STR R0, R6, #0
+        m.setMemory((short) 0x3002, (short) 0x0E00); // BRnzp x3000
+        m.getRegister(6).setValue((short) 0x4000);
+        m.getPCRegister().setValue((short) 0x3000);
+        return m;
+    }
+
+    private static void assertSame(final Machine a, final Machine b) {
+        assertEquals(a.clockCount(), b.clockCount());
+        assertEquals(a.getPCRegister().getValue(), b.getPCRegister().getValue());
+        assertEquals(a.getFlags().getValue(), b.getFlags().getValue());
+        for (int i = 0; i < 8; i++)
+            assertEquals(a.getRegister(i).getValue(), b.getRegister(i).getValue());
+        for (int i = 0; i < 0x10000; i++)
+            assertEquals(a.getMemory((short) i), b.getMemory((short) i));
+    }
+
+    /**
+     * Checkpoints a running loop several times. Only the first checkpoint holds all of
+     * memory, and restoring the file into a new Machine gives the state of the last
+     * checkpoint.
+     */
+    @Test
+    public void restoreTest() throws IOException {
+        final Machine a = counter();
+        final File f = File.createTempFile("mmxi", ".ckpt");
+        try {
+            final CheckpointStream s = CheckpointStream.create(a, f);
+            assertEquals(0x80, s.checkpoint());
+            for (int i = 0; i < 4; i++) {
+                a.alu.execute(1000);
+                assertEquals(1, s.checkpoint());
+            }
+            s.close();
+            assertEquals(4 + HEADER + 0x80 * PAGE + 4 * (HEADER + PAGE), f.length());
+
+            final Machine b = new Machine();
+            b.setFlatMemory(true);
+            assertEquals(5, CheckpointStream.restore(b, f));
+            assertSame(a, b);
+            assertEquals(0, b.getDirtyPages().cardinality());
+        } finally {
+            f.delete();
+        }
+    }
+
+    /**
+     * Clearing the dirty pages between checkpoints, as the Console's {@code pages -c} and
+     * {@code load} do, does not drop the pages from the next checkpoint.
+     */
+    @Test
+    public void clearDirtyTest() throws IOException {
+        final Machine a = counter();
+        final File f = File.createTempFile("mmxi", ".ckpt");
+        try {
+            final CheckpointStream s = CheckpointStream.create(a, f);
+            s.checkpoint();
+            a.alu.execute(1000);
+            a.clearDirtyPages();
+            assertEquals(1, s.checkpoint());
+            s.close();
+
+            final Machine b = new Machine();
+            assertEquals(2, CheckpointStream.restore(b, f));
+            assertSame(a, b);
+        } finally {
+            f.delete();
+        }
+    }
+
+    /**
+     * A checkpoint cut short is ignored, and resuming the file cuts it off and carries on
+     * from the checkpoint before it.
+     */
+    @Test
+    public void tornTest() throws IOException {
+        final Machine a = counter();
+        final File f = File.createTempFile("mmxi", ".ckpt");
+        try {
+            final CheckpointStream s = CheckpointStream.create(a, f);
+            s.checkpoint();
+            a.alu.execute(1000);
+            s.checkpoint();
+            final Machine saved = a.fork();
+            a.alu.execute(1000);
+            s.checkpoint();
+            s.close();
+
+            final RandomAccessFile raf = new RandomAccessFile(f, "rw");
+            raf.setLength(f.length() - 3);
+            raf.close();
+
+            Machine b = counter();
+            assertEquals(2, CheckpointStream.restore(b, f));
+            assertSame(saved, b);
+
+            b = counter();
+            final CheckpointStream r = CheckpointStream.resume(b, f);
+            assertEquals(2, r.getCount());
+            assertSame(saved, b);
+            b.alu.execute(500);
+            assertEquals(1, r.checkpoint());
+            r.close();
+
+            final Machine c = new Machine();
+            assertEquals(3, CheckpointStream.restore(c, f));
+            assertSame(b, c);
+        } finally {
+            f.delete();
+        }
+    }
+
+    /**
+     * Checkpoints do not mark the pages they save as accessed.
+     */
+    @Test
+    public void accessedPagesTest() throws IOException {
+        final Machine a = counter();
+        final File f = File.createTempFile("mmxi", ".ckpt");
+        try {
+            final CheckpointStream s = CheckpointStream.create(a, f);
+            a.clearAccessedPages();
+            a.alu.execute(1000);
+            final BitSet accessed = a.getAccessedPages();
+            s.checkpoint();
+            s.checkpoint();
+            s.close();
+            assertEquals(accessed, a.getAccessedPages());
+        } finally {
+            f.delete();
+        }
+    }
+
+    /**
+     * A file which is not a checkpoint file is refused.
+     */
+    @Test(expected = IOException.class)
+    public void badFileTest() throws IOException {
+        final File bad = File.createTempFile("mmxi", ".ckpt");
+        try {
+            CheckpointStream.restore(new Machine(), bad);
+        } finally {
+            bad.delete();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package edu.osu.cse.mmxi.junit.sim;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.osu.cse.mmxi.sim.machine.Machine;
+import edu.osu.cse.mmxi.sim.machine.interpreter.FastInterpreter;
+
+public class FastInterpreterTest {
+
+    /**
+     * Runs the same random program on the ordinary Interpreter and on the FastInterpreter
+     * and checks that the machines end up in the same state. TRAP and DBUG words are
+     * replaced, since they would print or halt.
+     */
+    @Test
+    public void equivalenceTest() {
+        final Random rand = new Random(3);
+        for (int run = 0; run < 20; run++) {
+            final Machine a = new Machine(), b = new Machine();
+            b.setALU(new FastInterpreter(b));
+            a.reset((short) 0);
+            b.reset((short) 0);
+            RandomProgram.load(rand, a, b);
+
+            assertEquals(5000, a.alu.execute(5000));
+            assertEquals(5000, b.alu.execute(5000));
+            RandomProgram.assertSameState(a, b);
+        }
+    }
+
+    @Test
+    public void haltTest() {
+        final Machine m = new Machine();
+        m.setALU(new FastInterpreter(m));
+        m.reset((short) 0);
+        m.setMemory((short) 0, (short) 0x1021); // ADD R0, R0, #1
+        m.setMemory((short) 1, (short) 0xF025); // TRAP x25 (HALT)
+        m.setMemory((short) 2, (short) 0x1021);
+        m.getRegister(0).setValue((short) 0);
+        m.getPCRegister().setValue((short) 0);
+        assertEquals(2, m.alu.execute(100));
+        assertEquals(3, m.clockCount());
+        assertEquals(1, m.getRegister(0).getValue());
+        assertEquals(0, m.alu.execute(100));
+    }
+}
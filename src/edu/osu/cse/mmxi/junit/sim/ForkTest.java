@@ -0,0 +1,64 @@
+package edu.osu.cse.mmxi.junit.sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import edu.osu.cse.mmxi.sim.machine.Machine;
+import edu.osu.cse.mmxi.sim.machine.interpreter.FastInterpreter;
+
+public class ForkTest {
+
+    private static Machine loaded(final boolean flat) {
+        final Machine m = new Machine();
+        m.setFlatMemory(flat);
+        m.reset((short) 0);
+        m.setMemory((short) 0x3000, (short) 0x1021); // ADD R0, R0, #1
+        m.setMemory((short) 0x3001, (short) 0x3003); // ST R0, x3003
+        m.setMemory((short) 0x3002, (short) 0xF025); // TRAP HALT
+        m.getPCRegister().setValue((short) 0x3000);
+        return m;
+    }
+
+    /**
+     * Writes made by a fork or by its parent after forking are not seen by the other.
+     */
+    @Test
+    public void isolationTest() {
+        for (final boolean flat : new boolean[] { false, true }) {
+            final Machine parent = loaded(flat), child = parent.fork();
+            child.setMemory((short) 0x3000, (short) 1);
+            parent.setMemory((short) 0x3001, (short) 2);
+            parent.setMemory((short) 0x5000, (short) 3);
+            assertEquals(0x1021, parent.getMemory((short) 0x3000));
+            assertEquals(1, child.getMemory((short) 0x3000));
+            assertEquals(2, parent.getMemory((short) 0x3001));
+            assertEquals(0x3003, child.getMemory((short) 0x3001));
+            assertEquals(0xF025 - 0x10000, child.getMemory((short) 0x3002));
+            assertEquals(0, child.getMemory((short) 0x5000));
+        }
+    }
+
+    /**
+     * Forks of one loaded program run separately from different inputs, without
+     * changing the parent.
+     */
+    @Test
+    public void runTest() {
+        final Machine parent = loaded(false);
+        parent.setALU(new FastInterpreter(parent));
+        for (int i = 0; i < 10; i++) {
+            final Machine child = parent.fork();
+            assertTrue(child.alu instanceof FastInterpreter);
+            child.getRegister(0).setValue((short) i);
+            while (!child.hasHalted())
+                child.alu.execute(100);
+            assertEquals(i + 1, child.getMemory((short) 0x3003));
+            assertEquals(4, child.clockCount());
+        }
+        assertEquals(0, parent.getMemory((short) 0x3003));
+        assertEquals(1, parent.clockCount());
+        assertEquals(0x3000, parent.getPCRegister().getValue());
+    }
+}
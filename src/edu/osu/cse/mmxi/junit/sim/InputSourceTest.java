@@ -0,0 +1,54 @@
+package edu.osu.cse.mmxi.junit.sim;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import org.junit.Test;
+
+import edu.osu.cse.mmxi.sim.ui.BufferInput;
+import edu.osu.cse.mmxi.sim.ui.SimUI;
+import edu.osu.cse.mmxi.sim.ui.StreamInput;
+
+public class InputSourceTest {
+
+    /**
+     * A stream longer than the buffer is read in full, and then gives the end of input.
+     */
+    @Test
+    public void streamTest() throws IOException {
+        final byte[] bytes = new byte[StreamInput.BUFFER * 2 + 5];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = (byte) (i * 7);
+        final StreamInput in = new StreamInput(new ByteArrayInputStream(bytes));
+        for (int i = 0; i < bytes.length; i++)
+            assertEquals(bytes[i] & 0xFF, in.read());
+        assertEquals(-1, in.read());
+        assertEquals(-1, in.read());
+    }
+
+    /**
+     * Characters and numbers are read from the same input, in order.
+     */
+    @Test
+    public void simUITest() {
+        final BufferInput input = new BufferInput("a 12\n0x1F\nfoo\n-3\nline\n");
+        final SimUI ui = new SimUI(SimUI.UIMode.QUIET) {
+            {
+                out = new PrintStream(new ByteArrayOutputStream());
+            }
+        };
+        ui.setInput(input);
+        for (int run = 0; run < 2; run++) {
+            assertEquals('a', ui.getChar());
+            assertEquals(12, ui.getShort());
+            assertEquals(31, ui.getShort());
+            assertEquals(-3, ui.getShort());
+            assertEquals('l', ui.getChar());
+            input.rewind();
+        }
+    }
+}
@@ -5,6 +5,7 @@ import static org.junit.Assert.assertEquals;
 import org.junit.Before;
 import org.junit.Test;
 
+import edu.osu.cse.mmxi.sim.machine.FlagsRegister;
 import edu.osu.cse.mmxi.sim.machine.Machine;
 import edu.osu.cse.mmxi.sim.machine.Register;
 import edu.osu.cse.mmxi.sim.machine.interpreter.instructions.Instruction.ADD;
@@ -763,4 +764,31 @@ public class InstructionTest {
         assertEquals("equal", 1, pc.getValue());
 
     }
+
+    /**
+     * FLAGS
+     */
+
+    // a pending result is seen by every kind of read, and is overridden by a write
+    @Test
+    public final void FlagsLazyTest() {
+        final FlagsRegister flags = m.getFlags();
+        flags.setValue((short) 0x10);
+        flags.setFlags((short) -5);
+        assertEquals("equal", 0x14, flags.getValue());
+        flags.setFlags((short) 0);
+        assertEquals("equal", true, flags.getZ());
+        assertEquals("equal", "FLAGS -z-", flags.toString());
+        flags.setFlags((short) 9);
+        flags.setValue((short) 4);
+        assertEquals("equal", 4, flags.getValue());
+        flags.setFlags((short) 9);
+        flags.setN(true);
+        assertEquals("equal", 5, flags.getValue());
+
+        m.getPCRegister().setValue((short) 0x3000);
+        flags.setFlags((short) -1);
+        new BRx(4, 0x40).execute(m);
+        assertEquals("equal", 0x3040, m.getPCRegister().getValue());
+    }
 }
@@ -0,0 +1,126 @@
+package edu.osu.cse.mmxi.junit.sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.osu.cse.mmxi.sim.machine.Machine;
+import edu.osu.cse.mmxi.sim.machine.WriteListener;
+import edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser;
+
+public class InterpreterTest {
+
+    private final Machine m = new Machine();
+
+    /**
+     * A word that has already been executed (and so decoded into the cache) must be
+     * re-decoded after it is overwritten.
+     */
+    @Test
+    public void selfModifyingCodeTest() {
+        m.reset((short) 0);
+        m.setMemory((short) 0x3000, (short) 0x1021); // ADD R0, R0, #1
+        m.getPCRegister().setValue((short) 0x3000);
+        m.stepClock();
+        assertEquals(1, m.getRegister(0).getValue());
+
+        m.setMemory((short) 0x3000, (short) 0x1025); // ADD R0, R0, #5
+        m.getPCRegister().setValue((short) 0x3000);
+        m.stepClock();
+        assertEquals(6, m.getRegister(0).getValue());
+    }
+
+    @Test
+    public void resetInvalidatesTest() {
+        m.reset((short) 0);
+        m.setMemory((short) 0x10, (short) 0x1021); // ADD R0, R0, #1
+        m.getPCRegister().setValue((short) 0x10);
+        m.stepClock();
+
+        m.reset((short) 0x1022); // every word is ADD R0, R0, #2
+        m.getRegister(0).setValue((short) 0);
+        m.getPCRegister().setValue((short) 0x10);
+        m.stepClock();
+        assertEquals(2, m.getRegister(0).getValue());
+    }
+
+    /**
+     * Only writes to watched locations are reported to the write listener, and register
+     * watches survive a reset.
+     */
+    @Test
+    public void writeListenerTest() {
+        final List<Integer> writes = new ArrayList<Integer>();
+        m.reset((short) 0);
+        m.setWriteListener(new WriteListener() {
+            @Override
+            public void memoryWritten(final short address) {
+                writes.add(address & 0xFFFF);
+            }
+
+            @Override
+            public void registerWritten(final int index) {
+                writes.add(index - 8);
+            }
+        });
+        m.watchMemory((short) 0x4001, true);
+        m.watchRegister(2, true);
+        m.setMemory((short) 0x3000, (short) 0x1021); // ADD R0, R0, #1
+        m.setMemory((short) 0x3001, (short) 0x7581); // STR R2, R6, #1
+        m.setMemory((short) 0x3002, (short) 0x1421); // ADD R2, R0, #1
+        m.setMemory((short) 0x3003, (short) 0x7580); // STR R2, R6, #0
+        m.getRegister(6).setValue((short) 0x4000);
+        m.getPCRegister().setValue((short) 0x3000);
+        for (int i = 0; i < 4; i++)
+            m.stepClock();
+        assertEquals(Arrays.asList(0x4001, -6), writes);
+
+        writes.clear();
+        m.reset((short) 0);
+        m.getRegister(2).setValue((short) 1);
+        m.watchMemory((short) 0x4001, false);
+        m.setMemory((short) 0x4001, (short) 1);
+        assertEquals(Arrays.asList(-6), writes);
+        m.clearWatches();
+        m.getRegister(2).setValue((short) 2);
+        assertEquals(1, writes.size());
+    }
+
+    @Test
+    public void sharedDecodeTest() {
+        assertSame(InstructionParser.parseInstruction((short) 0x1021),
+            InstructionParser.parseInstruction((short) 0x1021));
+        assertEquals("INC R0, #5", InstructionParser.parseInstruction((short) 0x1025)
+            .toString());
+    }
+
+    /**
+     * Runs random programs made mostly of the fused idioms once with
+     * {@link edu.osu.cse.mmxi.sim.machine.interpreter.ALU#execute(int)}, which uses
+     * superinstructions, and once a step at a time, which does not, and checks that the
+     * machines end up in the same state.
+     */
+    @Test
+    public void superinstructionTest() {
+        final Random rand = new Random(7);
+        final short[] idioms = { 0x5020, 0x1023, 0x1021, 0x0402, 0x6240, 0x7281, 0x1E7F,
+                0x0BFC, 0x3600 };
+        for (int run = 0; run < 20; run++) {
+            final Machine a = new Machine(), b = new Machine();
+            a.reset((short) 0);
+            b.reset((short) 0);
+            RandomProgram.load(rand, idioms, a, b);
+            for (int i = 0; i < 100; i++)
+                assertEquals(51, a.alu.execute(51));
+            for (int i = 0; i < 5100; i++)
+                b.stepClock();
+            RandomProgram.assertSameState(a, b);
+        }
+    }
+}
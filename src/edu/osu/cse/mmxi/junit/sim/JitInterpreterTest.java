@@ -0,0 +1,104 @@
+package edu.osu.cse.mmxi.junit.sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.osu.cse.mmxi.sim.machine.Machine;
+import edu.osu.cse.mmxi.sim.machine.interpreter.JitInterpreter;
+
+public class JitInterpreterTest {
+
+    private static Machine[] pair() {
+        final Machine a = new Machine(), b = new Machine();
+        b.setALU(new JitInterpreter(b));
+        a.reset((short) 0);
+        b.reset((short) 0);
+        return new Machine[] { a, b };
+    }
+
+    /**
+     * Runs the same random program on the ordinary Interpreter and on the JitInterpreter,
+     * in steps of varying size so that blocks are cut short by the step limit, and checks
+     * that the machines end up in the same state. TRAP and DBUG words are replaced, since
+     * they would print or halt. The branches in random code are page-relative, so the
+     * programs loop and their blocks get compiled.
+     */
+    @Test
+    public void equivalenceTest() {
+        final Random rand = new Random(5);
+        for (int run = 0; run < 20; run++) {
+            final Machine[] p = pair();
+            RandomProgram.load(rand, p);
+
+            for (int i = 0; i < 200; i++) {
+                final int steps = 1 + rand.nextInt(100);
+                assertEquals(steps, p[0].alu.execute(steps));
+                assertEquals(steps, p[1].alu.execute(steps));
+            }
+            RandomProgram.assertSameState(p[0], p[1]);
+        }
+    }
+
+    /**
+     * A loop which overwrites a later instruction of its own block, after the block has
+     * been compiled, must execute the new instruction.
+     */
+    @Test
+    public void selfModifyingTest() {
+        final Machine[] p = pair();
+        for (final Machine m : p) {
+            m.setMemory((short) 0x3000, (short) 0x1021); // ADD R0, R0, #1
+            m.setMemory((short) 0x3001, (short) 0x3203); // ST R1, x3003
+            m.setMemory((short) 0x3002, (short) 0x14A1); // ADD R2, R2, #1
+            m.setMemory((short) 0x3003, (short) 0x16E1); // ADD R3, R3, #1
+            m.setMemory((short) 0x3004, (short) 0x0E00); // BRnzp x3000
+            m.getRegister(1).setValue((short) 0x16E1);
+            m.getPCRegister().setValue((short) 0x3000);
+            assertEquals(100, m.alu.execute(100));
+            m.getRegister(1).setValue((short) 0x1921); // ADD R4, R4, #1
+            assertEquals(103, m.alu.execute(103));
+        }
+        RandomProgram.assertSameState(p[0], p[1]);
+        assertEquals(20, p[1].getRegister(4).getValue());
+    }
+
+    /**
+     * With the flags cleared, as after a reset or a restore, no branch is taken, not even
+     * a {@code BRnzp}, once the loop holding it has been compiled.
+     */
+    @Test
+    public void clearedFlagsTest() {
+        final Machine[] p = pair();
+        for (final Machine m : p) {
+            m.setMemory((short) 0x3000, (short) 0x0E02); // BRnzp x3002
+            m.setMemory((short) 0x3001, (short) 0x4000); // JMP x3000
+            m.setMemory((short) 0x3002, (short) 0xF025); // TRAP x25 (HALT)
+            m.getFlags().setValue((short) 0);
+            m.getPCRegister().setValue((short) 0x3000);
+            assertEquals(100, m.alu.execute(100));
+        }
+        RandomProgram.assertSameState(p[0], p[1]);
+        assertFalse(p[1].hasHalted());
+    }
+
+    @Test
+    public void haltTest() {
+        final Machine m = new Machine();
+        m.setALU(new JitInterpreter(m));
+        m.reset((short) 0);
+        m.setMemory((short) 0, (short) 0x1021); // ADD R0, R0, #1
+        m.setMemory((short) 1, (short) 0x0403); // BRz x0003
+        m.setMemory((short) 2, (short) 0x0E00); // BRnzp x0000
+        m.setMemory((short) 3, (short) 0xF025); // TRAP x25 (HALT)
+        m.getRegister(0).setValue((short) -50);
+        m.getPCRegister().setValue((short) 0);
+        assertEquals(150, m.alu.execute(1000));
+        assertEquals(151, m.clockCount());
+        assertEquals(0, m.getRegister(0).getValue());
+        assertEquals(0, m.alu.execute(100));
+    }
+}
@@ -1,10 +1,17 @@
 package edu.osu.cse.mmxi.junit.sim;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
 
 import org.junit.Test;
 
+import edu.osu.cse.mmxi.sim.SimulationContext;
 import edu.osu.cse.mmxi.sim.machine.Machine;
+import edu.osu.cse.mmxi.sim.machine.memory.FillMemory;
+import edu.osu.cse.mmxi.sim.machine.memory.FlatMemory;
+import edu.osu.cse.mmxi.sim.machine.memory.Memory;
 
 public class MemoryTest {
 
@@ -62,4 +69,63 @@ public class MemoryTest {
 
         assertEquals(m.getMemory((byte) 2, (short) 20), 99);
     }
+
+    @Test
+    public void flatMemoryTest() {
+        final Memory flat = new FlatMemory((short) 0x1234);
+        assertEquals(0x1234, flat.getMemory((short) 0xFFFF));
+        flat.setMemory((short) 0xFE05, (short) 99);
+        assertEquals(99, flat.getMemory((byte) 0x7F, (short) 5));
+        flat.setMemory((byte) 2, (short) 20, (short) 98);
+        assertEquals(98, flat.getMemory((short) 1044));
+    }
+
+    @Test
+    public void flatMachineTest() {
+        m.setFlatMemory(true);
+        m.reset((short) 0);
+        m.setMemory((short) 10513, (short) 99);
+        assertEquals(99, m.getMemory((short) 10513));
+        assertEquals(0, m.getMemory((short) 10514));
+    }
+
+    @Test
+    public void seededMachineTest() {
+        final SimulationContext context = new SimulationContext();
+        context.setSeed(42L);
+        final Machine a = new Machine(context), b = new Machine(context);
+        b.reset(null);
+        for (int i = 0; i < 8; i++)
+            assertEquals(a.getRegister(i).getValue(), b.getRegister(i).getValue());
+        for (int i = 0; i < 0x10000; i += 0x101)
+            assertEquals(a.getMemory((short) i), b.getMemory((short) i));
+    }
+
+    @Test
+    public void pageBitsTest() {
+        for (final Memory mem : new Memory[] { new FillMemory((short) 0),
+                new FlatMemory((short) 0) }) {
+            assertTrue(mem.getDirtyPages().isEmpty());
+            mem.setMemory((short) 0x3000, (short) 1);
+            mem.getMemory((short) 0x4000);
+            mem.setMemory((short) 0xFFFE, new short[4], 0, 4);
+            final BitSet dirty = new BitSet();
+            dirty.set(0);
+            dirty.set(0x18);
+            dirty.set(0x7F);
+            assertEquals(dirty, mem.getDirtyPages());
+            dirty.set(0x20);
+            assertEquals(dirty, mem.getAccessedPages());
+
+            mem.clearDirtyPages();
+            assertTrue(mem.getDirtyPages().isEmpty());
+            assertEquals(dirty, mem.getAccessedPages());
+            mem.clearAccessedPages();
+            assertTrue(mem.getAccessedPages().isEmpty());
+
+            dirty.clear(0x20);
+            assertEquals(dirty, mem.takeChangedPages());
+            assertTrue(mem.takeChangedPages().isEmpty());
+        }
+    }
 }
@@ -0,0 +1,72 @@
+package edu.osu.cse.mmxi.junit.sim;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import edu.osu.cse.mmxi.sim.machine.Machine;
+
+/**
+ * Random programs for checking that two ways of executing instructions agree. All of
+ * memory is filled with random words, except that TRAP and DBUG words are replaced,
+ * since they would print or halt; the registers are random, and the PC starts at x3000.
+ */
+final class RandomProgram {
+    private RandomProgram() {}
+
+    /**
+     * Loads the same random program into each of the Machines.
+     * 
+     * @param rand
+     *            the random number generator
+     * @param machines
+     *            the Machines, which have already been reset
+     */
+    static void load(final Random rand, final Machine... machines) {
+        load(rand, new short[0], machines);
+    }
+
+    /**
+     * Loads the same random program into each of the Machines, three quarters of it
+     * made up of the given words.
+     * 
+     * @param rand
+     *            the random number generator
+     * @param idioms
+     *            the words to pick from, or none for only random words
+     * @param machines
+     *            the Machines, which have already been reset
+     */
+    static void load(final Random rand, final short[] idioms, final Machine... machines) {
+        for (int i = 0; i < 0x10000; i++) {
+            short word = idioms.length != 0 && rand.nextInt(4) != 0 ? idioms[rand
+                .nextInt(idioms.length)] : (short) rand.nextInt();
+            if ((word >> 12 & 0xF) == 0x8 || (word >> 12 & 0xF) == 0xF)
+                word &= 0x7FFF;
+            for (final Machine m : machines)
+                m.setMemory((short) i, word);
+        }
+        for (int i = 0; i < 8; i++) {
+            final short s = (short) rand.nextInt();
+            for (final Machine m : machines)
+                m.getRegister(i).setValue(s);
+        }
+        for (final Machine m : machines)
+            m.getPCRegister().setValue((short) 0x3000);
+    }
+
+    /**
+     * Checks that two Machines are in the same state: the clock count, whether they have
+     * halted, the PC, flags, registers and all of memory.
+     */
+    static void assertSameState(final Machine a, final Machine b) {
+        assertEquals(a.clockCount(), b.clockCount());
+        assertEquals(a.hasHalted(), b.hasHalted());
+        assertEquals(a.getPCRegister().getValue(), b.getPCRegister().getValue());
+        assertEquals(a.getFlags().getValue(), b.getFlags().getValue());
+        for (int i = 0; i < 8; i++)
+            assertEquals(a.getRegister(i).getValue(), b.getRegister(i).getValue());
+        for (int i = 0; i < 0x10000; i++)
+            assertEquals(a.getMemory((short) i), b.getMemory((short) i));
+    }
+}
@@ -0,0 +1,89 @@
+package edu.osu.cse.mmxi.junit.sim;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.osu.cse.mmxi.sim.machine.Machine;
+import edu.osu.cse.mmxi.sim.machine.Snapshot;
+
+public class SnapshotTest {
+
+    /**
+     * Runs a random program part of the way, saves a snapshot, and finishes the run. A
+     * second Machine (with flat memory) restores the snapshot and finishes the same run,
+     * and the two must end up in the same state.
+     */
+    @Test
+    public void resumeTest() throws IOException {
+        final Random rand = new Random(5);
+        final Machine a = new Machine(), b = new Machine();
+        a.reset((short) 0);
+        b.setFlatMemory(true);
+        RandomProgram.load(rand, a);
+
+        a.alu.execute(3000);
+        final File snap = File.createTempFile("mmxi", ".snap");
+        Snapshot.save(a, snap);
+        assertEquals(Snapshot.SIZE, snap.length());
+        a.alu.execute(2000);
+
+        Snapshot.restore(b, snap);
+        snap.delete();
+        assertEquals(3001, b.clockCount());
+        b.alu.execute(2000);
+        RandomProgram.assertSameState(a, b);
+    }
+
+    /**
+     * A clock count past the range of an int survives a snapshot.
+     */
+    @Test
+    public void longClockTest() throws IOException {
+        final Machine a = new Machine(), b = new Machine();
+        a.reset((short) 0);
+        a.setClockCount(0x123456789L);
+        final File snap = File.createTempFile("mmxi", ".snap");
+        Snapshot.save(a, snap);
+        Snapshot.restore(b, snap);
+        snap.delete();
+        assertEquals(0x123456789L, b.clockCount());
+    }
+
+    /**
+     * Saving a snapshot reads every page, but leaves the accessed pages as they were, for
+     * both kinds of memory.
+     */
+    @Test
+    public void accessedPagesTest() throws IOException {
+        for (final boolean flat : new boolean[] { false, true }) {
+            final Machine m = new Machine();
+            m.reset(null, flat);
+            m.clearAccessedPages();
+            m.getMemory((short) 0x3000);
+            final BitSet accessed = m.getAccessedPages();
+            final File snap = File.createTempFile("mmxi", ".snap");
+            Snapshot.save(m, snap);
+            snap.delete();
+            assertEquals(accessed, m.getAccessedPages());
+        }
+    }
+
+    /**
+     * A file which is not a snapshot is refused.
+     */
+    @Test(expected = IOException.class)
+    public void badFileTest() throws IOException {
+        final File bad = File.createTempFile("mmxi", ".snap");
+        try {
+            Snapshot.restore(new Machine(), bad);
+        } finally {
+            bad.delete();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package edu.osu.cse.mmxi.junit.sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.osu.cse.mmxi.sim.machine.Machine;
+import edu.osu.cse.mmxi.sim.machine.UndoLog;
+
+public class UndoLogTest {
+
+    /**
+     * Creates a machine running a random program.
+     */
+    private static Machine randomMachine(final long seed) {
+        final Machine m = new Machine();
+        m.reset((short) 0);
+        RandomProgram.load(new Random(seed), m);
+        return m;
+    }
+
+    private static void run(final Machine m, final UndoLog log, final int steps) {
+        for (int i = 0; i < steps; i++) {
+            log.record(m);
+            m.stepClock();
+        }
+    }
+
+    /**
+     * Runs a random program, then undoes every instruction; the Machine must end up as
+     * it started, and stepping forward again must give the same state as before.
+     */
+    @Test
+    public void undoAllTest() {
+        final Machine m = randomMachine(7);
+        final Machine start = m.fork();
+        final UndoLog log = new UndoLog(5000);
+        run(m, log, 5000);
+        final Machine end = m.fork();
+        assertEquals(5000, log.size());
+
+        while (log.undo(m))
+            ;
+        RandomProgram.assertSameState(start, m);
+
+        run(m, log, 5000);
+        RandomProgram.assertSameState(end, m);
+    }
+
+    /**
+     * Once the log is full, the oldest instructions are forgotten.
+     */
+    @Test
+    public void ringTest() {
+        final Machine m = randomMachine(8);
+        final UndoLog log = new UndoLog(100);
+        run(m, log, 200);
+        final Machine mid = m.fork();
+        run(m, log, 100);
+        assertEquals(100, log.size());
+        for (int i = 0; i < 100; i++)
+            assertTrue(log.undo(m));
+        assertFalse(log.undo(m));
+        RandomProgram.assertSameState(mid, m);
+    }
+}
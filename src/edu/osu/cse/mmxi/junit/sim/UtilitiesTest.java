@@ -51,10 +51,4 @@ public class UtilitiesTest {
 
         assertEquals(Utilities.sShortToHex(test), "-8000");
     }
-
-    // cannot really test this
-    @Test
-    public void randomShortTest() {
-        // assertEquals((Utilities.randomShort() != 0), true);
-    }
 }
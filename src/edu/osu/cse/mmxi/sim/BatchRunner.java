@@ -0,0 +1,321 @@
+package edu.osu.cse.mmxi.sim;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import edu.osu.cse.mmxi.common.UI;
+import edu.osu.cse.mmxi.common.Utilities;
+import edu.osu.cse.mmxi.common.error.Error;
+import edu.osu.cse.mmxi.sim.error.SimCodes;
+import edu.osu.cse.mmxi.sim.loader.LinkingLoader;
+import edu.osu.cse.mmxi.sim.machine.Machine;
+import edu.osu.cse.mmxi.sim.machine.interpreter.FastInterpreter;
+import edu.osu.cse.mmxi.sim.machine.interpreter.JitInterpreter;
+import edu.osu.cse.mmxi.sim.ui.BufferInput;
+import edu.osu.cse.mmxi.sim.ui.SimUI;
+
+/**
+ * <p>
+ * Runs many programs in one JVM, each on its own {@link Machine}, across a fixed pool of
+ * worker threads. Every program runs as in the Simulator's batch mode: nothing is read
+ * from the console, and the program's output (along with any warnings) is captured into
+ * a buffer for that run. When all the programs have finished, the captured output and
+ * the status of each run are printed in the order the programs were given, followed by
+ * a summary line.
+ * </p>
+ * 
+ * <p>
+ * Usage:
+ * </p>
+ * 
+ * <pre>
+ *    java BatchRunner [-c <i>num</i>] [-j <i>threads</i>] [-i <i>ipla</i>]
+ *                     [-e <i>name</i>] [-m <i>name</i>] [-z|-f|-r] [--seed <i>num</i>]
+ *                     <i>program</i> [<i>program</i> ...]
+ * </pre>
+ * 
+ * <p>
+ * A program is an object file, a comma-separated list of object files which are linked
+ * together (the first one being the main segment), or a directory, which stands for
+ * every {@code .o} file in it. An assembly source ({@code .asm}) may be given in place
+ * of an object file, and is assembled in memory. If a file with the name of the (main)
+ * object file and the extension {@code .in} exists, it is used as the program's input.
+ * The options have the same meaning as for the Simulator, except that <code>-j</code>
+ * sets the number of worker threads (by default, the number of processors). With a
+ * seed, every program starts from the same random memory and registers. The exit status
+ * is {@link Simulator#EXIT_FAULT} if any program failed, {@link Simulator#EXIT_BUDGET} if
+ * any program ran out of clock ticks, and {@link Simulator#EXIT_HALTED} otherwise.
+ * </p>
+ */
+public final class BatchRunner {
+    private final SimulationContext context = new SimulationContext();
+    private int                     threads = Runtime.getRuntime().availableProcessors();
+    private Short                   fill    = null;
+    private String                  engine  = "interp";
+    private boolean                 flat    = false;
+
+    /**
+     * The outcome of running one program.
+     */
+    public static class Result {
+        public final String name;
+        public String       status;
+        public int          code;
+        public long         steps;
+        public long         nanos;
+        public String       output;
+
+        public Result(final String _name) {
+            name = _name;
+        }
+    }
+
+    /**
+     * A batch mode UI which reads from a fixed input and writes everything into a
+     * buffer.
+     */
+    private static class BufferUI extends SimUI {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        BufferUI(final byte[] input) {
+            super(UIMode.BATCH);
+            setInput(new BufferInput(input));
+            out = err = new PrintStream(buffer);
+        }
+
+        String getOutput() {
+            flush();
+            return buffer.toString();
+        }
+    }
+
+    /**
+     * Runs one program on a fresh Machine.
+     * 
+     * @param files
+     *            the object files of the program; the first is the main segment
+     * @return the outcome of the run
+     */
+    public Result run(final List<String> files) {
+        final Result r = new Result(join(files));
+        final BufferUI ui = new BufferUI(readInput(files.get(0)));
+        final Machine m = new Machine(context);
+        m.ui = ui;
+        m.reset(fill, flat);
+        if (engine.equals("fast"))
+            m.setALU(new FastInterpreter(m));
+        else if (engine.equals("jit"))
+            m.setALU(new JitInterpreter(m));
+
+        final long start = System.nanoTime();
+        try {
+            final List<Error> errors = new ArrayList<Error>();
+            final LinkingLoader loader = new LinkingLoader(m);
+            for (final String f : files)
+                Simulator.load(loader, f, ui, errors);
+            loader.setIPLA(context.getIPLA());
+            if (loader.getMissingSymbols().size() != 0)
+                errors.add(new Error("Undefined symbols: " + loader.getMissingSymbols(),
+                    SimCodes.LINK_UNDEF_EXT));
+            ui.printErrors(errors);
+            loader.link(errors, new HashMap<String, Short>());
+            ui.printErrors(errors);
+
+            final long max = context.getMaxClockCount();
+            while (!m.hasHalted() && m.clockCount() <= max)
+                m.alu.execute((int) Math.min(max - m.clockCount() + 1,
+                    Integer.MAX_VALUE));
+            r.status = m.hasHalted() ? "halted" : "clock limit reached";
+            r.code = m.hasHalted() ? Simulator.EXIT_HALTED : Simulator.EXIT_BUDGET;
+        } catch (final SimUI.Fault e) {
+            r.status = "fault";
+            r.code = Simulator.EXIT_FAULT;
+        } catch (final RuntimeException e) {
+            r.status = "fault: " + e;
+            r.code = Simulator.EXIT_FAULT;
+        }
+        r.nanos = System.nanoTime() - start;
+        r.steps = m.clockCount() - 1;
+        r.output = ui.getOutput();
+        return r;
+    }
+
+    /**
+     * Runs every program across the worker pool.
+     * 
+     * @param programs
+     *            the programs to run, each a list of object files
+     * @return the outcomes, in the same order as the programs
+     */
+    public List<Result> runAll(final List<List<String>> programs) {
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final List<Future<Result>> futures = new ArrayList<Future<Result>>();
+        for (final List<String> files : programs)
+            futures.add(pool.submit(new Callable<Result>() {
+                @Override
+                public Result call() {
+                    return run(files);
+                }
+            }));
+        pool.shutdown();
+
+        final List<Result> results = new ArrayList<Result>();
+        for (int i = 0; i < futures.size(); i++)
+            try {
+                results.add(futures.get(i).get());
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (final ExecutionException e) {
+                final Result r = new Result(join(programs.get(i)));
+                r.status = "fault: " + e.getCause();
+                r.code = Simulator.EXIT_FAULT;
+                r.output = "";
+                results.add(r);
+            }
+        return results;
+    }
+
+    private static String join(final List<String> files) {
+        String s = "";
+        for (final String f : files)
+            s += (s.length() == 0 ? "" : ", ") + f;
+        return s;
+    }
+
+    /**
+     * Reads the input file for a program, if there is one.
+     * 
+     * @param main
+     *            the path of the main object file
+     * @return the contents of the input file, or no bytes if there is none
+     */
+    private static byte[] readInput(final String main) {
+        final File f = new File(main.replaceAll("\\.[^./\\\\]*$", "") + ".in");
+        if (!f.isFile())
+            return new byte[0];
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            final FileInputStream in = new FileInputStream(f);
+            final byte[] buf = new byte[4096];
+            int n;
+            while ((n = in.read(buf)) != -1)
+                bytes.write(buf, 0, n);
+            in.close();
+        } catch (final IOException e) {
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Expands the program arguments into lists of object files. Directories are
+     * replaced by one program for each {@code .o} file in them, in name order.
+     */
+    private static List<List<String>> programs(final List<String> args) {
+        final List<List<String>> programs = new ArrayList<List<String>>();
+        for (final String arg : args) {
+            final File dir = new File(arg);
+            if (dir.isDirectory()) {
+                final String[] names = dir.list();
+                Arrays.sort(names);
+                for (final String name : names)
+                    if (name.endsWith(".o"))
+                        programs.add(Arrays.asList(new File(dir, name).getPath()));
+            } else
+                programs.add(Arrays.asList(arg.split(",")));
+        }
+        return programs;
+    }
+
+    public static void main(final String[] args) {
+        final BatchRunner runner = new BatchRunner();
+        final UI ui = new SimUI(SimUI.UIMode.BATCH);
+        final List<Error> errors = new ArrayList<Error>();
+        final List<String> names = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++) {
+            final String word = args[i];
+            try {
+                if (word.equals("-c"))
+                    runner.context.setMaxClockCount(Long.parseLong(args[++i]));
+                else if (word.equals("-j"))
+                    runner.threads = Math.max(1, Integer.parseInt(args[++i]));
+                else if (word.equals("-i"))
+                    runner.context.setIPLA(Utilities.parseShort(args[++i]));
+                else if (word.equals("--seed"))
+                    runner.context.setSeed(Long.decode(args[++i]));
+                else if (word.equals("-e"))
+                    runner.engine = args[++i];
+                else if (word.equals("-m")) {
+                    final String memory = args[++i];
+                    if (memory.equals("paged") || memory.equals("flat"))
+                        runner.flat = memory.equals("flat");
+                    else
+                        errors.add(new Error("-m " + memory + " is not paged or flat",
+                            SimCodes.UI_UNKN_CMD));
+                } else if (word.equals("-z"))
+                    runner.fill = 0;
+                else if (word.equals("-f"))
+                    runner.fill = (short) 0xED6E;
+                else if (word.equals("-r"))
+                    runner.fill = null;
+                else if (word.startsWith("-"))
+                    errors.add(new Error("command is " + word, SimCodes.UI_UNKN_CMD));
+                else
+                    names.add(word);
+            } catch (final ArrayIndexOutOfBoundsException e) {
+                errors.add(new Error(word + " needs an argument", SimCodes.UI_UNKN_CMD));
+            } catch (final NumberFormatException e) {
+                errors.add(new Error(word + " " + args[i] + " in invalid format",
+                    SimCodes.UI_BAD_CLOCK));
+            }
+        }
+        if (names.size() == 0)
+            errors.add(new Error(SimCodes.UI_NO_FILE));
+        try {
+            ui.printErrors(errors);
+        } catch (final SimUI.Fault e) {
+            System.exit(Simulator.EXIT_FAULT);
+        }
+
+        final long start = System.nanoTime();
+        final List<Result> results = runner.runAll(programs(names));
+        final double ms = (System.nanoTime() - start) / 1e6;
+
+        int halted = 0, budget = 0, faults = 0;
+        long steps = 0;
+        for (final Result r : results) {
+            ui.println("==> " + r.name + " <==");
+            ui.print(r.output);
+            if (r.output.length() != 0 && !r.output.endsWith("\n"))
+                ui.println("");
+            ui.println(String.format("%s: %d instructions in %.3f ms", r.status, r.steps,
+                r.nanos / 1e6));
+            steps += r.steps;
+            if (r.code == Simulator.EXIT_HALTED)
+                halted++;
+            else if (r.code == Simulator.EXIT_BUDGET)
+                budget++;
+            else
+                faults++;
+        }
+        ui.println(String.format(
+            "%d programs: %d halted, %d clock limit reached, %d faults; "
+                + "%d instructions in %.3f ms (%.3f MIPS)", results.size(), halted,
+            budget, faults, steps, ms, ms == 0 ? 0 : steps / ms / 1000));
+        ui.flush();
+        System.exit(faults != 0 ? Simulator.EXIT_FAULT : budget != 0
+            ? Simulator.EXIT_BUDGET : Simulator.EXIT_HALTED);
+    }
+}
@@ -0,0 +1,301 @@
+package edu.osu.cse.mmxi.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import edu.osu.cse.mmxi.common.Utilities;
+import edu.osu.cse.mmxi.sim.machine.Machine;
+
+/**
+ * <p>
+ * The condition of a conditional breakpoint, compiled once from its text into a tree of
+ * objects, so that testing it on every step does not parse anything. A condition is made
+ * of comparisons joined by {@code &&} and {@code ||} ({@code &&} binding tighter):
+ * </p>
+ * 
+ * <pre>
+ *   r0 == x10
+ *   [r6+1] != 0 &amp;&amp; flags == 4
+ *   r1 &lt; 0 || [counter] &gt;= #100
+ * </pre>
+ * 
+ * <p>
+ * The comparisons are {@code ==}, {@code !=}, {@code <}, {@code <=}, {@code >} and
+ * {@code >=}, and treat the values as signed 16-bit numbers. A value is a register
+ * ({@code r0} to {@code r7}), {@code pc}, {@code flags}, a number, a symbol, a sum or
+ * difference of these (without spaces, as in {@code r6+1}), or the word of memory at
+ * such a value, in square brackets. Registers and memory are read when the condition is
+ * tested, while numbers and symbols are looked up when it is compiled.
+ * </p>
+ */
+public abstract class BreakCondition {
+    /**
+     * The tokens of a condition: brackets, operators, the values between them, and any
+     * other character (which is never valid).
+     */
+    private static final Pattern TOKEN = Pattern.compile("\\[|\\]|==|!=|<=|>=|<|>|&&"
+                                           + "|\\|\\||[^\\s\\[\\]=!<>&|]+|\\S");
+
+    private String               text;
+
+    /**
+     * Tests the condition on the current state of a Machine.
+     * 
+     * @param m
+     *            the Machine
+     * @return whether the condition holds
+     */
+    public abstract boolean test(Machine m);
+
+    /**
+     * @return the text the condition was compiled from
+     */
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    /**
+     * Compiles a condition.
+     * 
+     * @param text
+     *            the text of the condition
+     * @param symbols
+     *            the symbols which may be used in it, by their full or short names
+     * @return the condition, or {@code null} if the text is malformed
+     */
+    public static BreakCondition compile(final String text,
+        final Map<String, Short> symbols) {
+        final List<String> tokens = new ArrayList<String>();
+        final Matcher mat = TOKEN.matcher(text);
+        while (mat.find())
+            tokens.add(mat.group());
+        if (tokens.size() == 0)
+            return null;
+        final Compiler c = new Compiler(tokens, symbols);
+        final BreakCondition cond = c.or();
+        if (cond == null || c.pos != tokens.size())
+            return null;
+        cond.text = text.trim();
+        return cond;
+    }
+
+    /**
+     * A value which is read from the Machine (or is constant) when the condition is
+     * tested.
+     */
+    private abstract static class Value {
+        abstract short get(Machine m);
+    }
+
+    /**
+     * A recursive descent compiler over the tokens of a condition. Each method returns
+     * {@code null} if the tokens do not make the expected construct.
+     */
+    private static class Compiler {
+        private final List<String>       tokens;
+        private final Map<String, Short> symbols;
+        int                              pos = 0;
+
+        Compiler(final List<String> _tokens, final Map<String, Short> _symbols) {
+            tokens = _tokens;
+            symbols = _symbols;
+        }
+
+        private String peek() {
+            return pos < tokens.size() ? tokens.get(pos) : "";
+        }
+
+        BreakCondition or() {
+            BreakCondition left = and();
+            while (left != null && peek().equals("||")) {
+                pos++;
+                final BreakCondition a = left, b = and();
+                if (b == null)
+                    return null;
+                left = new BreakCondition() {
+                    @Override
+                    public boolean test(final Machine m) {
+                        return a.test(m) || b.test(m);
+                    }
+                };
+            }
+            return left;
+        }
+
+        BreakCondition and() {
+            BreakCondition left = compare();
+            while (left != null && peek().equals("&&")) {
+                pos++;
+                final BreakCondition a = left, b = compare();
+                if (b == null)
+                    return null;
+                left = new BreakCondition() {
+                    @Override
+                    public boolean test(final Machine m) {
+                        return a.test(m) && b.test(m);
+                    }
+                };
+            }
+            return left;
+        }
+
+        BreakCondition compare() {
+            final Value a = value();
+            final String op = peek();
+            pos++;
+            final Value b = value();
+            if (a == null || b == null)
+                return null;
+            if (op.equals("=="))
+                return new BreakCondition() {
+                    @Override
+                    public boolean test(final Machine m) {
+                        return a.get(m) == b.get(m);
+                    }
+                };
+            else if (op.equals("!="))
+                return new BreakCondition() {
+                    @Override
+                    public boolean test(final Machine m) {
+                        return a.get(m) != b.get(m);
+                    }
+                };
+            else if (op.equals("<"))
+                return new BreakCondition() {
+                    @Override
+                    public boolean test(final Machine m) {
+                        return a.get(m) < b.get(m);
+                    }
+                };
+            else if (op.equals("<="))
+                return new BreakCondition() {
+                    @Override
+                    public boolean test(final Machine m) {
+                        return a.get(m) <= b.get(m);
+                    }
+                };
+            else if (op.equals(">"))
+                return new BreakCondition() {
+                    @Override
+                    public boolean test(final Machine m) {
+                        return a.get(m) > b.get(m);
+                    }
+                };
+            else if (op.equals(">="))
+                return new BreakCondition() {
+                    @Override
+                    public boolean test(final Machine m) {
+                        return a.get(m) >= b.get(m);
+                    }
+                };
+            return null;
+        }
+
+        Value value() {
+            if (!peek().equals("[")) {
+                final String s = peek();
+                pos++;
+                return sum(s);
+            }
+            pos++;
+            final Value addr = value();
+            if (addr == null || !peek().equals("]"))
+                return null;
+            pos++;
+            return new Value() {
+                @Override
+                short get(final Machine m) {
+                    return m.getMemory(addr.get(m));
+                }
+            };
+        }
+
+        /**
+         * Compiles a sum or difference, such as {@code r6+1}, by splitting it at its last
+         * operator (other than the sign of a decimal number, as in {@code #-1}).
+         */
+        private Value sum(final String s) {
+            int d = s.length() - 1;
+            while (d > 0 && (s.charAt(d) != '+' && s.charAt(d) != '-' || s
+                .charAt(d - 1) == '#'))
+                d--;
+            if (d <= 0)
+                return atom(s);
+            final Value a = sum(s.substring(0, d)), b = atom(s.substring(d + 1));
+            if (a == null || b == null)
+                return null;
+            if (s.charAt(d) == '+')
+                return new Value() {
+                    @Override
+                    short get(final Machine m) {
+                        return (short) (a.get(m) + b.get(m));
+                    }
+                };
+            else
+                return new Value() {
+                    @Override
+                    short get(final Machine m) {
+                        return (short) (a.get(m) - b.get(m));
+                    }
+                };
+        }
+
+        private Value atom(final String s) {
+            if (s.matches("[rR][0-7]")) {
+                final int r = s.charAt(1) - '0';
+                return new Value() {
+                    @Override
+                    short get(final Machine m) {
+                        return m.getRegister(r).getValue();
+                    }
+                };
+            } else if (s.equalsIgnoreCase("pc"))
+                return new Value() {
+                    @Override
+                    short get(final Machine m) {
+                        return m.getPCRegister().getValue();
+                    }
+                };
+            else if (s.equalsIgnoreCase("flags"))
+                return new Value() {
+                    @Override
+                    short get(final Machine m) {
+                        return m.getFlags().getValue();
+                    }
+                };
+            final Short c = constant(s);
+            if (c == null)
+                return null;
+            final short v = c;
+            return new Value() {
+                @Override
+                short get(final Machine m) {
+                    return v;
+                }
+            };
+        }
+
+        private Short constant(final String s) {
+            if (s.length() == 0)
+                return null;
+            if (s.startsWith("#"))
+                try {
+                    return (short) Integer.parseInt(s.substring(1));
+                } catch (final NumberFormatException e) {
+                    return null;
+                }
+            final Short v = Utilities.parseShort(s);
+            if (v != null)
+                return v;
+            for (final Entry<String, Short> e : symbols.entrySet())
+                if (e.getKey().equals(s) || e.getKey().endsWith("." + s))
+                    return e.getValue();
+            return null;
+        }
+    }
+}
@@ -1,49 +1,92 @@
 package edu.osu.cse.mmxi.sim;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.SortedSet;
+import java.util.Set;
 import java.util.TreeMap;
-import java.util.TreeSet;
 
 import edu.osu.cse.mmxi.common.Utilities;
 import edu.osu.cse.mmxi.common.error.Error;
+import edu.osu.cse.mmxi.common.object.ObjectFile;
 import edu.osu.cse.mmxi.sim.loader.LinkingLoader;
-import edu.osu.cse.mmxi.sim.loader.parser.ObjectFile;
+import edu.osu.cse.mmxi.sim.machine.CheckpointStream;
 import edu.osu.cse.mmxi.sim.machine.Machine;
+import edu.osu.cse.mmxi.sim.machine.Snapshot;
+import edu.osu.cse.mmxi.sim.machine.UndoLog;
+import edu.osu.cse.mmxi.sim.machine.WriteListener;
 
 public class Console {
+    /**
+     * The number of executed instructions remembered for the back command.
+     */
+    private static final int             HISTORY    = 0x10000;
 
-    private final Machine             m;
-    private int                       maxClock;
-    private Short                     memTrack;
-    private List<String>              files;
-    private LinkingLoader             loader;
-    private final SortedSet<Short>    breakpoints;
-    private final Map<Integer, Short> watchpoints;
-    private final Map<String, Short>  symbols;
-    private int                       symbLength = 0;
-    private final Map<Short, Integer> lines;
-    private final String              mcmoxel    = ""
-                                                     + "    _/      _/            _/      _/                                _/ \n"
-                                                     + "   _/_/  _/_/    _/_/_/  _/_/  _/_/    _/_/    _/    _/    _/_/    _/  \n"
-                                                     + "  _/  _/  _/  _/        _/  _/  _/  _/    _/    _/_/    _/_/_/_/  _/   \n"
-                                                     + " _/      _/  _/        _/      _/  _/    _/  _/    _/  _/        _/    \n"
-                                                     + "_/      _/    _/_/_/  _/      _/    _/_/    _/    _/    _/_/_/  _/     \n";
+    private final Machine                m;
+    private long                         maxClock;
+    private Short                        memTrack;
+    private List<String>                 files;
+    private LinkingLoader                loader;
+    private final Map<Short, Breakpoint> breakpoints;
+    private final long[]                 breakBits;
+    private final Map<Integer, Short>    watchpoints;
+    private final Map<String, Short>     symbols;
+    private int                          symbLength = 0;
+    private final Map<Short, Integer>    lines;
+    private final UndoLog                history;
+    private final Set<Integer>           written;
+    private final String                 mcmoxel    = ""
+                                                        + "    _/      _/            _/      _/                                _/ \n"
+                                                        + "   _/_/  _/_/    _/_/_/  _/_/  _/_/    _/_/    _/    _/    _/_/    _/  \n"
+                                                        + "  _/  _/  _/  _/        _/  _/  _/  _/    _/    _/_/    _/_/_/_/  _/   \n"
+                                                        + " _/      _/  _/        _/      _/  _/    _/  _/    _/  _/        _/    \n"
+                                                        + "_/      _/    _/_/_/  _/      _/    _/_/    _/    _/    _/_/_/  _/     \n";
+
+    /**
+     * A breakpoint, with its condition (or {@code null} if it always stops the machine)
+     * and the number of times it has stopped the machine.
+     */
+    private static class Breakpoint {
+        BreakCondition condition;
+        int            hits;
+
+        Breakpoint(final BreakCondition _condition) {
+            condition = _condition;
+        }
+    }
 
     public Console(final Machine _m, final List<String> _files) {
         m = _m;
-        maxClock = Simulator.MAX_CLOCK_COUNT;
+        maxClock = m.getContext().getMaxClockCount();
         memTrack = null;
         files = null;
         loader = null;
-        breakpoints = new TreeSet<Short>();
+        breakpoints = new TreeMap<Short, Breakpoint>();
+        breakBits = new long[0x400];
         watchpoints = new TreeMap<Integer, Short>();
         symbols = new TreeMap<String, Short>();
         lines = new TreeMap<Short, Integer>();
+        history = new UndoLog(HISTORY);
+        written = new LinkedHashSet<Integer>();
+        m.setWriteListener(new WriteListener() {
+            @Override
+            public void memoryWritten(final short address) {
+                written.add(address & 0xFFFF);
+            }
+
+            @Override
+            public void registerWritten(final int index) {
+                written.add(index - 8);
+            }
+        });
         m.ui.print(mcmoxel);
         m.ui.print("McMoxel MMXI Emulator\n");
         m.ui.print("Version 2");
@@ -62,6 +105,8 @@ public class Console {
             return;
         if ("break".startsWith(words[0]))
             _break(words);
+        else if (words[0].length() > 1 && "back".startsWith(words[0]))
+            back(words);
         else if ("clock".startsWith(words[0]))
             clock(words);
         else if ("disasm".startsWith(words[0]))
@@ -76,16 +121,24 @@ public class Console {
             help(words);
         else if ("load".startsWith(words[0]))
             load(words);
+        else if ("pages".startsWith(words[0]))
+            pages(words);
         else if ("run".startsWith(words[0]))
             run(words);
         else if ("reg".startsWith(words[0]))
             reg(words);
         else if ("reset".startsWith(words[0]))
             reset(words);
+        else if (words[0].length() > 3 && "restore".startsWith(words[0]))
+            restore(words);
+        else if (words[0].length() > 2 && "reverse-continue".startsWith(words[0]))
+            reverseContinue();
         else if ("step".startsWith(words[0]))
             step(false, words);
         else if ("symb".startsWith(words[0]))
             symb(words);
+        else if (words[0].length() > 1 && "save".startsWith(words[0]))
+            save(words);
         else if (words[0].length() > 3 && "track".startsWith(words[0]))
             track(words);
         else if ("trace".startsWith(words[0]))
@@ -103,6 +156,7 @@ public class Console {
         final boolean delAll = words.length > 1 && words[1].equals("-D");
         if (delAll) {
             breakpoints.clear();
+            Arrays.fill(breakBits, 0);
             m.ui.print("All breakpoints cleared.");
             return;
         }
@@ -111,11 +165,17 @@ public class Console {
                 m.ui.print("No breakpoints are set. Use 'break [addr]' to set a breakpoint.");
             else {
                 m.ui.print("Breakpoints are set at:\n");
-                for (final short b : breakpoints) {
-                    final short inst = m.getMemory(b);
+                for (final Entry<Short, Breakpoint> e : breakpoints.entrySet()) {
+                    final short b = e.getKey(), inst = m.getMemory(b);
+                    final Breakpoint bp = e.getValue();
                     m.ui.print("\n    " + Utilities.uShortToHex(b) + ":   ["
                         + Utilities.uShortToHex(inst) + "] "
-                        + m.alu.readInstruction(inst));
+                        + padRight(m.alu.readInstruction(inst), 20, ' '));
+                    if (bp.condition != null)
+                        m.ui.print("  if " + bp.condition);
+                    if (bp.hits != 0)
+                        m.ui.print("  (hit " + bp.hits
+                            + (bp.hits == 1 ? " time)" : " times)"));
                 }
             }
             return;
@@ -126,37 +186,92 @@ public class Console {
             help("help", "break");
             return;
         }
-        if (breakpoints.contains(addr)) {
-            if (del)
+        BreakCondition cond = null;
+        if (!del && words.length > 2) {
+            String text = "";
+            for (int i = 3; i < words.length; i++)
+                text += words[i] + " ";
+            if (!words[2].equals("if")
+                || (cond = BreakCondition.compile(text, symbols)) == null) {
+                m.ui.print("Malformed condition '" + text.trim() + "'\n");
+                help("help", "break");
+                return;
+            }
+        }
+        if (breakpoints.containsKey(addr)) {
+            if (del) {
                 breakpoints.remove(addr);
+                breakBits[(addr & 0xFFFF) >> 6] &= ~(1L << addr);
+            } else if (cond != null)
+                breakpoints.get(addr).condition = cond;
             else
                 m.ui.print("A breakpoint is already set at "
                     + Utilities.uShortToHex(addr) + "\n");
         } else if (del)
             m.ui.print("No breakpoints set at " + Utilities.uShortToHex(addr) + "\n");
-        else
-            breakpoints.add(addr);
+        else {
+            breakpoints.put(addr, new Breakpoint(cond));
+            breakBits[(addr & 0xFFFF) >> 6] |= 1L << addr;
+        }
+    }
+
+    /**
+     * Tests whether the machine should stop at a breakpoint at the PC, counting the hit
+     * if so. Addresses without a breakpoint are ruled out by a single bit test.
+     * 
+     * @param count
+     *            whether to count the hit; stopping while running backwards is not a hit
+     */
+    private boolean atBreakpoint(final short pc, final boolean count) {
+        if ((breakBits[(pc & 0xFFFF) >> 6] & 1L << pc) == 0)
+            return false;
+        final Breakpoint bp = breakpoints.get(pc);
+        if (bp.condition != null && !bp.condition.test(m))
+            return false;
+        if (count)
+            bp.hits++;
+        return true;
+    }
+
+    private void back(final String... words) {
+        int steps = 1;
+        if (words.length > 1)
+            try {
+                steps = Integer.parseInt(words[1]);
+                if (steps < 0) {
+                    m.ui.print("'steps' cannot be negative.");
+                    help("help", "back");
+                    return;
+                }
+            } catch (final NumberFormatException e) {
+                m.ui.print("'steps' must be a number.");
+                help("help", "back");
+                return;
+            }
+        runBackwards(steps);
+        printInstruction();
     }
 
     private void clock(final String... words) {
-        int max;
+        long max;
         if (words.length > 1) {
             try {
-                max = Integer.parseInt(words[1]);
+                max = Long.parseLong(words[1]);
             } catch (final NumberFormatException e) {
                 m.ui.print("Malformed clock maximum '" + words[1] + "'\n");
                 help("help", "disasm");
                 return;
             }
             if (max < 0) {
-                max = Integer.MAX_VALUE;
+                max = Long.MAX_VALUE;
                 m.ui.print("Setting maximum clock ticks to unlimited.");
             } else
                 m.ui.print("Setting maximum clock ticks to " + max + ".");
-            maxClock = Simulator.MAX_CLOCK_COUNT = max;
+            m.getContext().setMaxClockCount(max);
+            maxClock = max;
         } else
             m.ui.print("Clock currently at " + (m.clockCount() - 1) + " instructions"
-                + (maxClock == Integer.MAX_VALUE ? "." : " out of " + maxClock + "."));
+                + (maxClock == Long.MAX_VALUE ? "." : " out of " + maxClock + "."));
     }
 
     private void disasm(final String... words) {
@@ -272,6 +387,7 @@ public class Console {
             return;
         }
         m.setMemory(addr, value);
+        history.clear();
     }
 
     private void help(final String... words) {
@@ -282,25 +398,48 @@ public class Console {
             + " available in the simulator.\n\n"
             + " You can get additional help on specific commands by typing help followed\n"
             + " by the command or keyword you want more information on.\n\n COMMANDS:\n"
-            + "    break           clock           disasm          dump\n"
-            + "    edit            help            load            quit\n"
-            + "    reg             reset           run             step\n"
-            + "    symb            trace           track           watch";
+            + "    back            break           clock           disasm\n"
+            + "    dump            edit            help            load\n"
+            + "    pages           quit            reg             reset\n"
+            + "    restore         run             save            step\n"
+            + "    symb            trace           track           watch\n"
+            + "    reverse-continue";
         if (words.length < 2 || words[1].length() == 0)
             m.ui.print(help);
         else if ("break".startsWith(words[1]))
-            m.ui.print(" Syntax: break [-d] <address>\n         break [-D]\n"
+            m.ui.print(" Syntax: break [-d] <address>\n"
+                + "         break <address> if <condition>\n         break [-D]\n"
                 + " Mnemonics: b br bre brea break\n\n"
                 + " Breakpoints allow the user to stop execution of the program when certain\n"
                 + " addresses are reached. The breakpoint facility functions during trace,\n"
                 + " step, and execution modes.\n\n"
-                + " Breakpoints can be listed, added, or removed.\n\n"
+                + " Breakpoints can be listed, added, or removed. A breakpoint may be given\n"
+                + " a condition, in which case it only stops the machine if the condition\n"
+                + " holds when the address is reached. A condition compares registers (r0\n"
+                + " to r7, pc, flags), words of memory ([addr]), numbers and symbols with\n"
+                + " ==, !=, <, <=, > or >= (as signed numbers), and may join comparisons\n"
+                + " with && and ||. The list shows how many times each breakpoint has been\n"
+                + " hit.\n\n"
                 + "   > break           Lists the currently set breakpoints\n"
                 + "   > break -D        Deletes all breakpoints\n"
                 + "   > break x3021     Sets breakpoint at address 0x3021\n"
-                + "   > break -d x3021  Removes the breakpoint\n\n"
+                + "   > break -d x3021  Removes the breakpoint\n"
+                + "   > break loop if r1 == 0 && [r6+1] != x10\n"
+                + "                     Stops at 'loop' when R1 is 0 and the word after\n"
+                + "                     the one R6 points to is not 0x10\n\n"
                 + " A message will be displayed to notify you if you try to set a breakpoint\n"
                 + " that already exists, or try to delete a breakpoint that does not exist.");
+        else if (words[1].length() > 1 && "back".startsWith(words[1]))
+            m.ui.print(" Syntax: back [<steps>]\n Mnemonics: ba bac back\n\n"
+                + " Undo the last 'steps' instructions (default 1) executed by run, step or\n"
+                + " trace, then print the PC and disassemble the next instruction to be\n"
+                + " evaluated. The registers, PC, flags, clock count and memory are put\n"
+                + " back as they were, but characters already printed or read are not.\n"
+                + " Only the last " + HISTORY + " instructions are remembered, and they are\n"
+                + " forgotten when the machine is changed by load, reset, restore, edit or\n"
+                + " reg (see also 'help reverse-continue').\n\n"
+                + "   > back     Undo the last instruction\n"
+                + "   > back 20  Undo the last 20 instructions");
         else if ("clock".startsWith(words[1]))
             m.ui.print(" Syntax: clock [<max>]\n Mnemonics: c cl clo cloc clock\n\n"
                 + "Used without arguments, the clock command will print how many\n"
@@ -392,6 +531,15 @@ public class Console {
                 + " The file(s) must be in MMXI file format. Otherwise, any parsing errors\n"
                 + " will be displayed on-screen, with the machine in an indeterminate\n"
                 + " state afterwards (another load command will reset the machine).");
+        else if ("pages".startsWith(words[1]))
+            m.ui.print(" Syntax: pages [-c]\n Mnemonics: p pa pag page pages\n\n"
+                + " The pages command shows which of the 128 pages of memory have been\n"
+                + " written to (W) or only read from (r) since the last reset or load, or\n"
+                + " since the last 'pages -c'. Reads made by console commands such as dump\n"
+                + " and disasm are counted too. Each line shows 32 pages, starting from the\n"
+                + " address on the left.\n\n"
+                + "   > pages     Show the written and read pages\n"
+                + "   > pages -c  Show them, then mark every page as untouched");
         else if ("run".startsWith(words[1]))
             m.ui.print(" Syntax: run [<dest>]\n"
                 + " Mnemonics: r ru run\n\n"
@@ -435,6 +583,28 @@ public class Console {
                 + "   > reset        Randomize all memory\n"
                 + "   > reset xFEED  Set all registers and words of memory to 0xFEED\n"
                 + "   > reset -l 0   Clear everything, then load the last loaded program");
+        else if (words[1].length() > 3 && "restore".startsWith(words[1]))
+            m.ui.print(" Syntax: restore <file>\n Mnemonics: rest resto restor restore\n\n"
+                + " The restore command returns the machine to the state saved in a snapshot\n"
+                + " file by the save command: the registers, the PC, the flags, the clock\n"
+                + " count, and all of memory. Symbols, breakpoints and watchpoints are kept\n"
+                + " as they are. The file may also be a checkpoint file written by the\n"
+                + " Simulator's --checkpoint option, in which case the state of its last\n"
+                + " complete checkpoint is restored.\n\n"
+                + "   > restore run.snap  Restore the state saved in 'run.snap'\n"
+                + "   > restore run.ckpt  Restore the last checkpoint in 'run.ckpt'");
+        else if (words[1].length() > 2 && "reverse-continue".startsWith(words[1]))
+            m.ui.print(" Syntax: reverse-continue\n"
+                + " Mnemonics: rev reve ... reverse-continue\n\n"
+                + " The reverse-continue command undoes instructions (as the back command\n"
+                + " does) until the PC reaches a breakpoint, a watched register or memory\n"
+                + " location changes, or no more instructions are remembered.");
+        else if (words[1].length() > 1 && "save".startsWith(words[1]))
+            m.ui.print(" Syntax: save <file>\n Mnemonics: sa sav save\n\n"
+                + " The save command writes the state of the machine (the registers, the PC,\n"
+                + " the flags, the clock count, and all of memory) to a snapshot file, which\n"
+                + " can later be loaded again with the restore command.\n\n"
+                + "   > save run.snap  Save the current state to 'run.snap'");
         else if ("step".startsWith(words[1]))
             m.ui.print(" Syntax: step [<steps>]\n Mnemonics: s st ste step\n\n"
                 + " Execute 'steps' instructions (default 1), then print the PC and\n"
@@ -515,10 +685,11 @@ public class Console {
         for (final String f : files)
             if (loader == null) {
                 m.ui.print("Loading main: " + f + "\n");
-                loader = new LinkingLoader(f, m, errors);
+                loader = new LinkingLoader(m);
+                Simulator.load(loader, f, m.ui, errors);
             } else {
                 m.ui.print("Loading file: " + f + "\n");
-                loader.addFile(f, errors);
+                Simulator.load(loader, f, m.ui, errors);
             }
         if (ipla != null && loader != null)
             loader.setIPLA(ipla);
@@ -534,6 +705,9 @@ public class Console {
         }
         lines.clear();
         loader.link(errors, symbols);
+        m.clearDirtyPages();
+        m.clearAccessedPages();
+        history.clear();
         files = new ArrayList<String>();
         for (final ObjectFile ofile : loader.getOFiles())
             files.add(ofile.getFilePath());
@@ -545,6 +719,20 @@ public class Console {
         printInstruction();
     }
 
+    private void pages(final String... words) {
+        final BitSet dirty = m.getDirtyPages(), accessed = m.getAccessedPages();
+        for (int p = 0; p < 0x80; p++) {
+            if (p % 32 == 0)
+                m.ui.print((p == 0 ? "" : "\n") + Utilities.uShortToHex((short) (p << 9))
+                    + "  ");
+            m.ui.print(dirty.get(p) ? "W" : accessed.get(p) ? "r" : ".");
+        }
+        if (words.length > 1 && words[1].equals("-c")) {
+            m.clearDirtyPages();
+            m.clearAccessedPages();
+        }
+    }
+
     private void reg(final String... words) {
         if (words.length <= 1) {
             for (int i = 0; i < 8; i++)
@@ -563,6 +751,8 @@ public class Console {
                 help("help", "reg");
                 return;
             }
+        if (value != null)
+            history.clear();
         if (words[1].equalsIgnoreCase("pc")) {
             if (value != null)
                 m.getPCRegister().setValue(value);
@@ -605,6 +795,8 @@ public class Console {
                 return;
             }
         m.reset(fill);
+        history.clear();
+        written.addAll(watchpoints.keySet());
         if (load != 0)
             load("load");
         else {
@@ -613,6 +805,42 @@ public class Console {
         }
     }
 
+    private void save(final String... words) {
+        if (words.length < 2) {
+            m.ui.print("No file given\n");
+            help("help", "save");
+            return;
+        }
+        try {
+            Snapshot.save(m, new File(words[1]));
+            m.ui.print("Saved snapshot to " + words[1]);
+        } catch (final IOException e) {
+            m.ui.print("Unable to save snapshot: " + e.getMessage());
+        }
+    }
+
+    private void restore(final String... words) {
+        if (words.length < 2) {
+            m.ui.print("No file given\n");
+            help("help", "restore");
+            return;
+        }
+        try {
+            final File file = new File(words[1]);
+            if (CheckpointStream.isCheckpointFile(file))
+                m.ui.print("Restored " + CheckpointStream.restore(m, file)
+                    + " checkpoints from " + words[1]);
+            else {
+                Snapshot.restore(m, file);
+                m.ui.print("Restored snapshot from " + words[1]);
+            }
+            history.clear();
+            printInstruction();
+        } catch (final IOException e) {
+            m.ui.print("Unable to restore snapshot: " + e.getMessage());
+        }
+    }
+
     private void run(final String... words) {
         Short loc = null;
         if (words.length > 1) {
@@ -626,6 +854,11 @@ public class Console {
         runMachine(Integer.MAX_VALUE);
     }
 
+    private void reverseContinue() {
+        runBackwards(Integer.MAX_VALUE);
+        printInstruction();
+    }
+
     private void step(final boolean trace, final String... words) {
         int steps = 1;
         if (words.length > 1)
@@ -713,6 +946,8 @@ public class Console {
         final boolean delAll = words.length > 1 && words[1].equals("-D");
         if (delAll) {
             watchpoints.clear();
+            m.clearWatches();
+            written.clear();
             m.ui.print("All watchpoints cleared.");
             return;
         }
@@ -756,17 +991,19 @@ public class Console {
             }
 
         if (watchpoints.containsKey(pt)) {
-            if (del)
+            if (del) {
                 watchpoints.remove(pt);
-            else if (pt < 0)
+                setWatch(pt, false);
+            } else if (pt < 0)
                 m.ui.print("A watchpoint is already set on register " + (pt + 8) + ".\n");
             else
                 m.ui.print("A watchpoint is already set on address "
                     + Utilities.uShortToHex((short) pt) + "\n");
-        } else if (!del)
+        } else if (!del) {
             watchpoints.put(pt,
                 pt < 0 ? m.getRegister(pt + 8).getValue() : m.getMemory((short) pt));
-        else if (pt < 0)
+            setWatch(pt, true);
+        } else if (pt < 0)
             m.ui.print("No watchpoints set on register " + (pt + 8) + ".\n");
         else
             m.ui.print("No watchpoints set on address "
@@ -775,6 +1012,7 @@ public class Console {
 
     private int runMachine(final int steps) {
         for (int i = 0; i < steps; i++) {
+            history.record(m);
             m.stepClock();
             if (m.clockCount() > maxClock) {
                 m.ui.print("Clock limit " + maxClock + " reached.");
@@ -782,27 +1020,12 @@ public class Console {
                 return 2;
             }
             final short pc = m.getPCRegister().getValue();
-            if (breakpoints.contains(pc)) {
+            if (atBreakpoint(pc, true)) {
                 m.ui.print("Breakpoint encountered at " + Utilities.uShortToHex(pc));
                 return 3;
             }
-            for (final Map.Entry<Integer, Short> e : watchpoints.entrySet()) {
-                final int k = e.getKey();
-                final short v = k < 0 ? m.getRegister(k + 8).getValue() : m
-                    .getMemory((short) k);
-                if (v != e.getValue()) {
-                    if (k < 0)
-                        m.ui.print("Watchpoint triggered on register " + (k + 8));
-                    else
-                        m.ui.print("Watchpoint triggered on memory location "
-                            + Utilities.uShortToHex((short) k));
-                    m.ui.print(": value changed from "
-                        + Utilities.uShortToHex(e.getValue()) + " to "
-                        + Utilities.uShortToHex(v));
-                    e.setValue(v);
-                    return 4;
-                }
-            }
+            if (checkWatchpoints())
+                return 4;
             if (m.hasHalted()) {
                 m.ui.print("Program exited normally after " + (m.clockCount() - 1)
                     + " steps.");
@@ -812,6 +1035,76 @@ public class Console {
         return 0;
     }
 
+    /**
+     * Undoes up to the given number of instructions, stopping early at breakpoints and
+     * watchpoints as {@link #runMachine(int)} does, but without counting breakpoint hits.
+     * 
+     * @return 0 if all the steps were undone, 3 or 4 if a breakpoint or watchpoint
+     *         stopped it, or 5 if no more instructions are remembered
+     */
+    private int runBackwards(final int steps) {
+        for (int i = 0; i < steps; i++) {
+            if (!history.undo(m)) {
+                m.ui.print("No more instructions to undo; clock at "
+                    + (m.clockCount() - 1) + ".");
+                return 5;
+            }
+            final short pc = m.getPCRegister().getValue();
+            if (atBreakpoint(pc, false)) {
+                m.ui.print("Breakpoint encountered at " + Utilities.uShortToHex(pc));
+                return 3;
+            }
+            if (checkWatchpoints())
+                return 4;
+        }
+        return 0;
+    }
+
+    /**
+     * Starts or stops watching writes to a register (given as its number minus 8) or a
+     * memory location.
+     */
+    private void setWatch(final int pt, final boolean on) {
+        if (pt < 0)
+            m.watchRegister(pt + 8, on);
+        else
+            m.watchMemory((short) pt, on);
+    }
+
+    /**
+     * Compares each watched register and memory location which has been written to since
+     * the last check with its last known value, and reports the first one which has
+     * changed. The Machine tells the Console about writes to watched locations as they
+     * happen, so nothing is compared after an instruction which wrote none of them.
+     * 
+     * @return whether a watchpoint was triggered
+     */
+    private boolean checkWatchpoints() {
+        if (written.isEmpty())
+            return false;
+        for (final Iterator<Integer> i = written.iterator(); i.hasNext();) {
+            final int k = i.next();
+            i.remove();
+            final Short old = watchpoints.get(k);
+            if (old == null)
+                continue;
+            final short v = k < 0 ? m.getRegister(k + 8).getValue() : m
+                .getMemory((short) k);
+            if (v != old) {
+                if (k < 0)
+                    m.ui.print("Watchpoint triggered on register " + (k + 8));
+                else
+                    m.ui.print("Watchpoint triggered on memory location "
+                        + Utilities.uShortToHex((short) k));
+                m.ui.print(": value changed from " + Utilities.uShortToHex(old) + " to "
+                    + Utilities.uShortToHex(v));
+                watchpoints.put(k, v);
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void printRegistersAndShortMemory() {
         short mem;
         if (memTrack == null)
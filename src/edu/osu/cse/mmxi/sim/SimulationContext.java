@@ -0,0 +1,101 @@
+package edu.osu.cse.mmxi.sim;
+
+/**
+ * The settings of a single simulation run: the clock limit, the initial program load
+ * address, the seed of the Machine's random number generator, and where and how often to
+ * write checkpoints. Each Machine has its own context, so that several Machines with
+ * different settings can run in the same JVM.
+ */
+public class SimulationContext {
+    /**
+     * The number of instructions to execute before stopping (or, in interactive modes,
+     * asking whether to continue).
+     */
+    private long    maxClockCount      = 10000;
+
+    /**
+     * The initial program load address passed to the linking loader.
+     */
+    private short   ipla               = 0;
+
+    /**
+     * The seed for the Machine's random number generator, or {@code null} to seed it
+     * from the system time.
+     */
+    private Long    seed               = null;
+
+    /**
+     * The checkpoint file to write while running, or {@code null} for none.
+     */
+    private String  checkpointFile     = null;
+
+    /**
+     * Whether to restore the Machine from the checkpoint file before running, and
+     * continue it, instead of starting a new one.
+     */
+    private boolean resume             = false;
+
+    /**
+     * The number of instructions between checkpoints.
+     */
+    private int     checkpointInterval = 1000000;
+
+    public long getMaxClockCount() {
+        return maxClockCount;
+    }
+
+    /**
+     * Sets the clock limit. A negative limit means there is no limit.
+     * 
+     * @param _maxClockCount
+     *            the new clock limit
+     */
+    public void setMaxClockCount(final long _maxClockCount) {
+        maxClockCount = _maxClockCount < 0 ? Long.MAX_VALUE : _maxClockCount;
+    }
+
+    public short getIPLA() {
+        return ipla;
+    }
+
+    public void setIPLA(final short _ipla) {
+        ipla = _ipla;
+    }
+
+    public Long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(final Long _seed) {
+        seed = _seed;
+    }
+
+    public String getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    /**
+     * Sets the checkpoint file.
+     * 
+     * @param file
+     *            the checkpoint file, or {@code null} for none
+     * @param _resume
+     *            whether to resume from the file instead of starting a new one
+     */
+    public void setCheckpointFile(final String file, final boolean _resume) {
+        checkpointFile = file;
+        resume = _resume;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    public void setCheckpointInterval(final int _checkpointInterval) {
+        checkpointInterval = _checkpointInterval;
+    }
+}
@@ -1,22 +1,37 @@
 package edu.osu.cse.mmxi.sim;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 
+import edu.osu.cse.mmxi.asm.Assembler;
+import edu.osu.cse.mmxi.common.UI;
 import edu.osu.cse.mmxi.common.Utilities;
 import edu.osu.cse.mmxi.common.error.Error;
+import edu.osu.cse.mmxi.common.object.ObjectFile;
 import edu.osu.cse.mmxi.sim.error.SimCodes;
 import edu.osu.cse.mmxi.sim.loader.LinkingLoader;
+import edu.osu.cse.mmxi.sim.machine.CheckpointStream;
 import edu.osu.cse.mmxi.sim.machine.Machine;
+import edu.osu.cse.mmxi.sim.machine.interpreter.FastInterpreter;
+import edu.osu.cse.mmxi.sim.machine.interpreter.Interpreter;
+import edu.osu.cse.mmxi.sim.machine.interpreter.JitInterpreter;
 import edu.osu.cse.mmxi.sim.ui.SimUI;
 import edu.osu.cse.mmxi.sim.ui.SimUI.UIMode;
+import edu.osu.cse.mmxi.sim.ui.StreamInput;
 
 public final class Simulator {
-    public static int          MAX_CLOCK_COUNT = 10000;
-    private static final short FILL            = (short) 0xED6E;
-    private static short       IPLA            = 0;
+    private static final short FILL        = (short) 0xED6E;
+
+    /**
+     * Exit statuses of a batch mode run: the program halted, the simulator or the program
+     * hit a fatal error, or the clock limit was reached before the program halted.
+     */
+    public static final int    EXIT_HALTED = 0, EXIT_FAULT = 1, EXIT_BUDGET = 2;
 
     /**
      * <p>
@@ -35,10 +50,33 @@ public final class Simulator {
      * 
      * <p>
      * During Step or Trace mode, we pass information from the Machine to the UI during
-     * each clock step.
+     * each clock step. Otherwise, the Machine's ALU is asked to execute all the
+     * instructions up to the clock limit at once. In Batch mode, reaching the clock
+     * limit stops the machine instead of asking whether to continue.
      * </p>
      */
     public static void startClockLoop(final Machine m) {
+        startClockLoop(m, null);
+    }
+
+    /**
+     * Runs the clock loop as {@link #startClockLoop(Machine)} does, writing a checkpoint
+     * every {@link SimulationContext#getCheckpointInterval()} instructions, and once more
+     * when the loop stops. If the checkpoint stream is new, a first checkpoint is written
+     * before the Machine starts.
+     * 
+     * @param m
+     *            the loaded machine
+     * @param checkpoints
+     *            the checkpoint stream, or {@code null} for none
+     */
+    public static void startClockLoop(final Machine m,
+        final CheckpointStream checkpoints) {
+        final SimulationContext context = m.getContext();
+        if (checkpoints != null && checkpoints.getCount() == 0)
+            checkpoint(m, checkpoints);
+        long saved = m.clockCount();
+        long next = saved + (long) context.getCheckpointInterval();
         clockloop: while (!m.hasHalted()) {
             if (m.ui.getMode() == UIMode.TRACE) {
                 if (m.clockCount() % 20 == 1) {
@@ -60,23 +98,49 @@ public final class Simulator {
                 m.ui.print(m.alu.readInstructionAt(m.getPCRegister().getValue()) + "\n");
             }
 
-            if (m.clockCount() > MAX_CLOCK_COUNT) {
+            if (m.clockCount() > context.getMaxClockCount()) {
+                if (m.ui.getMode() == UIMode.BATCH)
+                    break;
                 String ans = m.ui.prompt(
-                    "Clock limit " + MAX_CLOCK_COUNT + " reached. Continue? ")
+                    "Clock limit " + context.getMaxClockCount() + " reached. Continue? ")
                     .toLowerCase();
                 while (true)
                     if ("no".startsWith(ans))
                         break clockloop;
                     else if ("yes".startsWith(ans)) {
-                        MAX_CLOCK_COUNT *= 2;
+                        context.setMaxClockCount(context.getMaxClockCount() * 2);
                         break;
                     } else
                         ans = m.ui.prompt("Please answer 'yes' or 'no'. ").toLowerCase();
             }
 
-            m.stepClock();
+            if (m.ui.getMode() == UIMode.TRACE)
+                m.stepClock();
+            else if (checkpoints != null)
+                m.alu.execute((int) Math.min(context.getMaxClockCount() - m.clockCount()
+                    + 1, next - m.clockCount()));
+            else
+                m.alu.execute((int) Math.min(context.getMaxClockCount() - m.clockCount()
+                    + 1, Integer.MAX_VALUE));
+
+            if (checkpoints != null && m.clockCount() >= next) {
+                checkpoint(m, checkpoints);
+                saved = m.clockCount();
+                next = saved + (long) context.getCheckpointInterval();
+            }
         }
+        if (checkpoints != null && m.clockCount() != saved)
+            checkpoint(m, checkpoints);
         m.ui.print("Machine halted after " + (m.clockCount() - 1) + " steps.");
+        m.ui.flush();
+    }
+
+    private static void checkpoint(final Machine m, final CheckpointStream checkpoints) {
+        try {
+            checkpoints.checkpoint();
+        } catch (final IOException e) {
+            m.ui.printErrors(new Error(e.getMessage(), SimCodes.IO_BAD_CHECKPOINT));
+        }
     }
 
     /**
@@ -91,8 +155,13 @@ public final class Simulator {
      * 
      * <pre>
      *    java Simulator [-c<i>num</i>|--max-clock-count <i>num</i>]
-     *                   [-s|-t|-q|--step|--trace|--quiet]
-     *                   [-z|-f|-r|--zero|--fill|--rand]
+     *                   [-e<i>name</i>|--engine <i>name</i>]
+     *                   [-m<i>name</i>|--memory <i>name</i>]
+     *                   [-s|-t|-q|-b|--step|--trace|--quiet|--batch]
+     *                   [-z|-f|-r|--zero|--fill|--rand] [--seed <i>num</i>]
+     *                   [--checkpoint <i>file</i>|--resume <i>file</i>]
+     *                   [--checkpoint-every <i>num</i>] [--async-output]
+     *                   [--input <i>file</i>]
      *                   <i>file.txt</i>
      * </pre>
      * 
@@ -106,10 +175,33 @@ public final class Simulator {
      * </p>
      * 
      * <p>
-     * The <code>--step</code>, <code>--trace</code>, and <code>--quiet</code> modes
-     * (short names <code>-s</code>, <code>-t</code>, and <code>-q</code>) are mutually
-     * exclusive and control the operation of the machine. In quiet mode, all instructions
-     * are executed normally and the only output is that driven by the program. In trace
+     * The <code>--engine</code> argument (short name <code>-e</code>) chooses how
+     * instructions are executed. <code>interp</code> (the default) decodes each
+     * instruction and executes it on the Machine; <code>fast</code> executes runs of
+     * instructions in a single switch loop over primitive copies of the registers, which
+     * gives identical results but is considerably faster for long-running programs in
+     * quiet mode; and <code>jit</code> also compiles frequently executed blocks of
+     * instructions to Java bytecode, which is faster still for programs which spend
+     * their time in loops.
+     * </p>
+     * 
+     * <p>
+     * The <code>--memory</code> argument (short name <code>-m</code>) chooses how memory
+     * is stored. <code>paged</code> (the default) allocates each 512-word page when it is
+     * first used; <code>flat</code> allocates all of memory as a single array, which makes
+     * every load and store a single array access.
+     * </p>
+     * 
+     * <p>
+     * The <code>--step</code>, <code>--trace</code>, <code>--quiet</code> and
+     * <code>--batch</code> modes (short names <code>-s</code>, <code>-t</code>,
+     * <code>-q</code> and <code>-b</code>) are mutually exclusive and control the
+     * operation of the machine. In quiet mode, all instructions are executed normally and
+     * the only output is that driven by the program. Batch mode is like quiet mode, but
+     * never stops to ask a question: warnings are passed over, the clock limit is a hard
+     * limit, and the exit status tells whether the program halted (0), failed (1) or ran
+     * out of clock ticks (2). A summary line of the instructions executed and the speed
+     * of the run is printed to standard error at the end. In trace
      * mode, every instruction, along with the current register state, is printed as it is
      * executed, for debugging purposes. In step mode, a detailed view of the register
      * states and the current page of memory is printed after every instruction, and the
@@ -117,11 +209,44 @@ public final class Simulator {
      * </p>
      * 
      * <p>
+     * Each file is an object file, or an assembly source ending in {@code .asm}, which is
+     * assembled in memory and handed straight to the loader, so that a program can be
+     * assembled and run in one step without writing an object file.
+     * </p>
+     * 
+     * <p>
      * The <code>--zero</code>, <code>--fill</code> and <code>--rand</code> flags (short
      * names <code>-z</code>, <code>-f</code>, and <code>-r</code>) are mutually exclusive
      * and control whether to randomize memory, the registers, and the condition codes,
      * fill them with an easily recognizable repeated hex code ('ED6E'), or zero them all.
-     * The default behavior is <code>--rand</code>.
+     * The default behavior is <code>--rand</code>. The <code>--seed</code> argument makes
+     * the random values (including those from <code>TRAP RND</code>) the same on every
+     * run, by seeding the machine's random number generator with <i>num</i>.
+     * </p>
+     * 
+     * <p>
+     * The <code>--checkpoint</code> argument writes checkpoints of the machine to
+     * <i>file</i> while it runs: the first one holds all of memory, and each later one
+     * only the pages written to since (see {@link CheckpointStream}). A checkpoint is
+     * written every 1000000 instructions, or every <i>num</i> given by
+     * <code>--checkpoint-every</code>, and once more when the machine stops. The
+     * <code>--resume</code> argument loads the program as usual, then restores the
+     * machine from the last complete checkpoint in <i>file</i> and carries on running
+     * and checkpointing from there, as after a crash. None of these arguments can be
+     * used in step mode.
+     * </p>
+     * 
+     * <p>
+     * Output is buffered, and written out when the buffer is full, before the program
+     * reads input, and when it halts. The <code>--async-output</code> flag writes full
+     * buffers on a background thread, so that a program which prints a lot is not held
+     * up by a slow console.
+     * </p>
+     * 
+     * <p>
+     * The <code>--input</code> argument reads the program's input (for
+     * <code>TRAP IN</code> and <code>TRAP INN</code>) from <i>file</i> instead of the
+     * console, so that a program which reads input can be run without a terminal.
      * </p>
      * 
      * <p>
@@ -133,6 +258,8 @@ public final class Simulator {
      *    java Simulator -zc100000 prog.txt
      *    java Simulator -rs prog.txt -c 100000
      *    java Simulator -f --max-clock-count 100000 prog.txt --step
+     *    java Simulator -b prog.asm
+     *    java Simulator -q -c -1 --checkpoint run.ckpt prog.o
      * </pre>
      * 
      * @param args
@@ -140,7 +267,8 @@ public final class Simulator {
      */
     public static List<String> processArgs(final String[] args, final Machine m) {
         char mode = 0;
-        boolean clockSet = false, iplaSet = false, fillSet = false;
+        boolean clockSet = false, iplaSet = false, fillSet = false, engineSet = false,
+            memorySet = false, checkpointSet = false;
         final List<String> files = new LinkedList<String>();
 
         final List<Error> errors = new ArrayList<Error>();
@@ -156,9 +284,10 @@ public final class Simulator {
                     try {
                         if (word.length() > 2
                             && word.substring(0, 2).toLowerCase().equals("0x"))
-                            MAX_CLOCK_COUNT = Integer.parseInt(word.substring(2), 16);
+                            m.getContext().setMaxClockCount(
+                                Long.parseLong(word.substring(2), 16));
                         else
-                            MAX_CLOCK_COUNT = Integer.parseInt(word);
+                            m.getContext().setMaxClockCount(Long.parseLong(word));
                         clockSet = true;
                     } catch (final NumberFormatException e) {
                         errors.add(new Error(word + " in invalid format; ignoring...",
@@ -172,12 +301,70 @@ public final class Simulator {
                         SimCodes.UI_MULTI_IPLA));
                 else
                     try {
-                        IPLA = Utilities.parseShort(word);
+                        m.getContext().setIPLA(Utilities.parseShort(word));
                         iplaSet = true;
                     } catch (final NullPointerException e) {
                         errors.add(new Error(word + " in invalid format; ignoring...",
                             SimCodes.UI_BAD_IPLA));
                     }
+            } else if (mode == 'I') {
+                mode = 0;
+                try {
+                    m.ui.setInput(new StreamInput(new FileInputStream(word)));
+                } catch (final IOException e) {
+                    errors.add(new Error(word + ": " + e.getMessage(),
+                        SimCodes.UI_BAD_INPUT));
+                }
+            } else if (mode == 'k' || mode == 'K') {
+                m.getContext().setCheckpointFile(word, mode == 'K');
+                checkpointSet = true;
+                mode = 0;
+            } else if (mode == 'v') {
+                mode = 0;
+                checkpointSet = true;
+                try {
+                    m.getContext().setCheckpointInterval(
+                        Math.max(1, Integer.parseInt(word)));
+                } catch (final NumberFormatException e) {
+                    errors.add(new Error(word + " in invalid format; ignoring...",
+                        SimCodes.UI_BAD_CHECKPOINT));
+                }
+            } else if (mode == 'S') {
+                mode = 0;
+                try {
+                    m.setSeed(Long.decode(word));
+                } catch (final NumberFormatException e) {
+                    errors.add(new Error(word + " in invalid format; ignoring...",
+                        SimCodes.UI_BAD_SEED));
+                }
+            } else if (mode == 'e') {
+                mode = 0;
+                if (engineSet)
+                    errors.add(new Error("engine setting '" + word
+                        + "' found; ignoring...", SimCodes.UI_MULTI_ENGINE));
+                else if (word.equals("interp")) {
+                    m.setALU(new Interpreter(m));
+                    engineSet = true;
+                } else if (word.equals("fast")) {
+                    m.setALU(new FastInterpreter(m));
+                    engineSet = true;
+                } else if (word.equals("jit")) {
+                    m.setALU(new JitInterpreter(m));
+                    engineSet = true;
+                } else
+                    errors.add(new Error(word + " is not an engine; ignoring...",
+                        SimCodes.UI_BAD_ENGINE));
+            } else if (mode == 'm') {
+                mode = 0;
+                if (memorySet)
+                    errors.add(new Error("memory setting '" + word
+                        + "' found; ignoring...", SimCodes.UI_MULTI_MEMORY));
+                else if (word.equals("paged") || word.equals("flat")) {
+                    m.setFlatMemory(word.equals("flat"));
+                    memorySet = true;
+                } else
+                    errors.add(new Error(word + " is not a memory type; ignoring...",
+                        SimCodes.UI_BAD_MEMORY));
             } else if (word.length() > 1 && word.charAt(0) == '-') {
                 if (word.length() > 2 && word.charAt(1) == '-') {
                     word = word.substring(2);
@@ -185,8 +372,24 @@ public final class Simulator {
                         mode = 'c';
                     else if (word.equals("ipla"))
                         mode = 'i';
+                    else if (word.equals("seed"))
+                        mode = 'S';
+                    else if (word.equals("checkpoint"))
+                        mode = 'k';
+                    else if (word.equals("resume"))
+                        mode = 'K';
+                    else if (word.equals("checkpoint-every"))
+                        mode = 'v';
+                    else if (word.equals("input"))
+                        mode = 'I';
+                    else if (word.equals("engine"))
+                        mode = 'e';
+                    else if (word.equals("memory"))
+                        mode = 'm';
                     else if (word.equals("quiet"))
                         setMode(m.ui, UIMode.QUIET, errors);
+                    else if (word.equals("batch"))
+                        setMode(m.ui, UIMode.BATCH, errors);
                     else if (word.equals("trace"))
                         setMode(m.ui, UIMode.TRACE, errors);
                     else if (word.equals("step"))
@@ -197,6 +400,8 @@ public final class Simulator {
                         fillSet = setFill(m, FILL, fillSet, errors);
                     else if (word.equals("rand"))
                         fillSet = setFill(m, null, fillSet, errors);
+                    else if (word.equals("async-output"))
+                        m.ui.setAsync(true);
                     else
                         errors
                             .add(new Error("command is --" + word, SimCodes.UI_UNKN_CMD));
@@ -204,7 +409,9 @@ public final class Simulator {
                     for (int j = 1; j < word.length(); j++)
                         switch (word.charAt(j)) {
                         case 'c':
+                        case 'e':
                         case 'i':
+                        case 'm':
                             mode = word.charAt(j);
                             if (j == word.length() - 1)
                                 break;
@@ -218,6 +425,9 @@ public final class Simulator {
                         case 't':
                             setMode(m.ui, UIMode.TRACE, errors);
                             break;
+                        case 'b':
+                            setMode(m.ui, UIMode.BATCH, errors);
+                            break;
                         case 's':
                             setMode(m.ui, UIMode.STEP, errors);
                             break;
@@ -241,21 +451,25 @@ public final class Simulator {
             m.ui.setMode(files.size() == 0 ? UIMode.STEP : UIMode.QUIET);
         if (files.size() == 0 && m.ui.getMode() != UIMode.STEP)
             errors.add(new Error(SimCodes.UI_NO_FILE));
+        if (checkpointSet && m.ui.getMode() == UIMode.STEP)
+            errors.add(new Error(SimCodes.UI_STEP_CHECKPOINT));
         if (errors.size() != 0) {
             errors.add(new Error("Proper syntax:\n"
                 + "java Simulator [-c num|--max-clock-ticks num]\n"
                 + "               [-i num|--ipla num]\n"
-                + "               [-s|-t|-q|--step|--trace|--quiet]\n"
-                + "               [-z|-f|-r|--zero|--fill|--rand]\n"
-                + "               file.o [file2.o ...]", SimCodes.MSG_SYNTAX));
+                + "               [-e name|--engine name]\n"
+                + "               [-m name|--memory name]\n"
+                + "               [-s|-t|-q|-b|--step|--trace|--quiet|--batch]\n"
+                + "               [-z|-f|-r|--zero|--fill|--rand] [--seed num]\n"
+                + "               [--checkpoint file|--resume file]\n"
+                + "               [--checkpoint-every num] [--async-output]\n"
+                + "               [--input file]\n"
+                + "               file.o|file.asm [file2.o ...]", SimCodes.MSG_SYNTAX));
 
             m.ui.printErrors(errors);
         }
         if (files.size() == 0 && m.ui.getMode() != UIMode.STEP)
             System.exit(1);
-        if (MAX_CLOCK_COUNT < 0) // /// // // // // Using this value means that the
-            MAX_CLOCK_COUNT = Integer.MAX_VALUE; // clockCount() <= MAX comparison above
-                                                 // will always be true due to overflow
         return files;
     }
 
@@ -277,8 +491,19 @@ public final class Simulator {
         return true;
     }
 
+    /**
+     * In batch mode, a fatal error while loading exits with {@link #EXIT_FAULT}; during
+     * the run, it is reported by {@link #runBatch(Machine, CheckpointStream)}.
+     */
     public static void main(final String[] args) {
+        try {
+            run(args);
+        } catch (final SimUI.Fault e) {
+            System.exit(EXIT_FAULT);
+        }
+    }
 
+    private static void run(final String[] args) {
         final Machine machine = new Machine();
         final List<String> files = processArgs(args, machine);
 
@@ -286,11 +511,10 @@ public final class Simulator {
             new Console(machine, files);
         else {
             final List<Error> errors = new ArrayList<Error>();
-            final LinkingLoader loader = new LinkingLoader(files.remove(0), machine,
-                errors);
+            final LinkingLoader loader = new LinkingLoader(machine);
             for (final String f : files)
-                loader.addFile(f, errors);
-            loader.setIPLA(IPLA);
+                load(loader, f, machine.ui, errors);
+            loader.setIPLA(machine.getContext().getIPLA());
             if (loader.getMissingSymbols().size() != 0) {
                 String s = "Undefined symbols: ";
                 for (final String symb : loader.getMissingSymbols())
@@ -301,7 +525,107 @@ public final class Simulator {
             machine.ui.printErrors(errors);
             loader.link(errors, new HashMap<String, Short>());
             machine.ui.printErrors(errors);
-            startClockLoop(machine);
+            final CheckpointStream checkpoints = openCheckpoints(machine);
+            final boolean batch = machine.ui.getMode() == UIMode.BATCH;
+            int code = EXIT_HALTED;
+            if (batch)
+                code = runBatch(machine, checkpoints);
+            else
+                startClockLoop(machine, checkpoints);
+            try {
+                if (checkpoints != null)
+                    checkpoints.close();
+            } catch (final IOException e) {
+            }
+            if (batch)
+                System.exit(code);
+        }
+    }
+
+    /**
+     * Adds a file to the LinkingLoader. An assembly source file (ending in {@code .asm})
+     * is assembled in memory, and its object module is given to the loader without
+     * writing an object file; any other file is read by the loader itself.
+     * 
+     * @param loader
+     *            the loader to add the file to
+     * @param path
+     *            the path of the file
+     * @param ui
+     *            the UI to print the assembler's errors to
+     * @param errors
+     *            the list of errors that will be added to
+     */
+    public static void load(final LinkingLoader loader, final String path, final UI ui,
+        final List<Error> errors) {
+        final File file = new File(path);
+        if (!path.endsWith(".asm") || !file.isFile() || !file.canRead()
+            || file.length() <= 0) {
+            loader.addFile(path, errors);
+            return;
+        }
+        final ObjectFile ofile = new ObjectFile(path, file.getName());
+        try {
+            new Assembler(ui, path, ofile);
+            loader.addFile(ofile, errors);
+        } catch (final IOException e) {
+            errors.add(new Error(path, SimCodes.IO_BAD_READ));
+        }
+    }
+
+    /**
+     * Opens the checkpoint file given on the command line, restoring the machine from it
+     * when resuming.
+     * 
+     * @param m
+     *            the loaded machine
+     * @return the checkpoint stream, or {@code null} if there is no checkpoint file
+     */
+    private static CheckpointStream openCheckpoints(final Machine m) {
+        final String file = m.getContext().getCheckpointFile();
+        if (file == null)
+            return null;
+        try {
+            if (m.getContext().isResume())
+                return CheckpointStream.resume(m, new File(file));
+            else
+                return CheckpointStream.create(m, new File(file));
+        } catch (final IOException e) {
+            m.ui.printErrors(new Error(file + ": " + e.getMessage(),
+                SimCodes.IO_BAD_CHECKPOINT));
+            return null;
+        }
+    }
+
+    /**
+     * Runs the clock loop in batch mode, then prints a summary line to standard error.
+     * 
+     * @param m
+     *            the loaded machine
+     * @param checkpoints
+     *            the checkpoint stream, or {@code null} for none
+     * @return the exit status: {@link #EXIT_HALTED}, {@link #EXIT_BUDGET} or
+     *         {@link #EXIT_FAULT}
+     */
+    private static int runBatch(final Machine m, final CheckpointStream checkpoints) {
+        final long start = System.nanoTime();
+        String status;
+        int code;
+        try {
+            startClockLoop(m, checkpoints);
+            status = m.hasHalted() ? "halted" : "clock limit reached";
+            code = m.hasHalted() ? EXIT_HALTED : EXIT_BUDGET;
+        } catch (final SimUI.Fault e) {
+            status = "fault";
+            code = EXIT_FAULT;
+        } catch (final RuntimeException e) {
+            status = "fault: " + e;
+            code = EXIT_FAULT;
         }
+        final double ms = (System.nanoTime() - start) / 1e6;
+        final long steps = m.clockCount() - 1;
+        m.ui.warn(String.format("%s: %d instructions in %.3f ms (%.3f MIPS)", status,
+            steps, ms, ms == 0 ? 0 : steps / ms / 1000));
+        return code;
     }
 }
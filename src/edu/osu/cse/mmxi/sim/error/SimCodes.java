@@ -11,26 +11,17 @@ public enum SimCodes implements ErrorCodes {
 
     IO_BAD_FILE(102, "File was empty", ErrorLevels.FATAL),
 
-    // simpleLoader errors
-    ADDR_OUT_BOUNDS(200, "Text address out of bounds", ErrorLevels.FATAL),
-
-    ADDR_EXEC_OUT_BOUNDS(201, "Execution address out of bounds", ErrorLevels.FATAL),
-
-    // parser errors
-    PARSE_EXECPTION(300, "Parsing exception", ErrorLevels.WARN),
+    IO_BAD_CHECKPOINT(103, "Failed to read or write checkpoint file", ErrorLevels.FATAL),
 
+    // parser errors (see also ObjectCodes)
     PARSE_EMPTY(301, "Parsing complete, no tokens found", ErrorLevels.FATAL),
 
-    PARSE_NO_HEADER(302, "Object File did not contain a Header record", ErrorLevels.FATAL),
-
     PARSE_NO_RECORDS(303, "Object File did not contain any Text records",
         ErrorLevels.FATAL),
 
     PARSE_NO_EXEC(304, "Object File did not contain an Exec record", ErrorLevels.FATAL),
 
-    PARSE_HEADER_FIRST(305, "The first record must be a Header record", ErrorLevels.FATAL), // <--
-
-    PARSE_BAD_TEXT(399, "Malformed record", ErrorLevels.FATAL),
+    PARSE_BAD_BINARY(306, "Malformed binary object file", ErrorLevels.FATAL),
 
     // execution errors
     EXEC_TRAP_UNKN(400, "Unknown TRAP vector", ErrorLevels.WARN),
@@ -54,6 +45,24 @@ public enum SimCodes implements ErrorCodes {
 
     UI_MULTI_IPLA(506, "Duplicate --ipla argument", ErrorLevels.WARN), // <--
 
+    UI_BAD_ENGINE(507, "--engine argument not recognized", ErrorLevels.WARN),
+
+    UI_MULTI_ENGINE(508, "Duplicate --engine argument", ErrorLevels.WARN),
+
+    UI_BAD_MEMORY(509, "--memory argument not recognized", ErrorLevels.WARN),
+
+    UI_MULTI_MEMORY(510, "Duplicate --memory argument", ErrorLevels.WARN),
+
+    UI_BAD_SEED(511, "--seed argument in invalid format", ErrorLevels.WARN),
+
+    UI_BAD_CHECKPOINT(512, "--checkpoint-every argument in invalid format",
+        ErrorLevels.WARN),
+
+    UI_BAD_INPUT(513, "--input file could not be opened", ErrorLevels.WARN),
+
+    UI_STEP_CHECKPOINT(514, "--checkpoint, --resume and --checkpoint-every are not "
+        + "supported in step mode", ErrorLevels.FATAL),
+
     UI_UNKN_CMD(599, "Unknown command", ErrorLevels.FATAL),
 
     // Linker messages
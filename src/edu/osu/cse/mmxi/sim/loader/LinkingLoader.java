@@ -19,9 +19,11 @@ import java.util.TreeSet;
 import edu.osu.cse.mmxi.common.Location;
 import edu.osu.cse.mmxi.common.Utilities;
 import edu.osu.cse.mmxi.common.error.Error;
+import edu.osu.cse.mmxi.common.object.BinaryObjectFile;
+import edu.osu.cse.mmxi.common.object.ObjectFile;
+import edu.osu.cse.mmxi.common.object.Text;
+import edu.osu.cse.mmxi.common.object.TextBlock;
 import edu.osu.cse.mmxi.sim.error.SimCodes;
-import edu.osu.cse.mmxi.sim.loader.parser.ObjectFile;
-import edu.osu.cse.mmxi.sim.loader.parser.Text;
 import edu.osu.cse.mmxi.sim.machine.Machine;
 
 /**
@@ -32,7 +34,7 @@ public class LinkingLoader {
     private final List<ObjectFile>          files;
     private final Map<String, FileLocation> defined;
     private final Set<String>               undefined;
-    private final String                    main;
+    private String                          main;
     private short                           ipla;
 
     /**
@@ -46,17 +48,45 @@ public class LinkingLoader {
      */
     public LinkingLoader(final String path, final Machine machine,
         final List<Error> errors) {
+        this(machine);
+        addFile(path, errors);
+    }
+
+    /**
+     * Constructor for the LinkingLoader, starting from an object module which is already
+     * in memory.
+     * 
+     * @param ofile
+     *            the main object module
+     * @param machine
+     *            the machine that is being used
+     */
+    public LinkingLoader(final ObjectFile ofile, final Machine machine,
+        final List<Error> errors) {
+        this(machine);
+        addFile(ofile, errors);
+    }
+
+    /**
+     * Constructor for a LinkingLoader with no files yet, which are added with
+     * {@link #addFile(String, List)} or {@link #addFile(ObjectFile, List)}. The first one
+     * added is the main segment.
+     * 
+     * @param machine
+     *            the machine that is being used
+     */
+    public LinkingLoader(final Machine machine) {
         m = machine;
         ipla = 0;
         defined = new TreeMap<String, FileLocation>();
         undefined = new TreeSet<String>();
         files = new LinkedList<ObjectFile>();
-        addFile(path, errors);
-        main = files.size() == 0 ? null : files.get(0).getSegName();
     }
 
     /**
-     * Essentially adds every file that the user inputs and converts to object file
+     * Essentially adds every file that the user inputs and converts to object file. A
+     * binary object file (see {@link BinaryObjectFile}) is recognized by its contents,
+     * whatever its name.
      * 
      * @param path
      *            The name of the path
@@ -74,6 +104,17 @@ public class LinkingLoader {
             myerrors.add(new Error(path, SimCodes.IO_BAD_READ));
         else if (file.length() <= 0)
             myerrors.add(new Error(path, SimCodes.IO_BAD_FILE));
+        else if (BinaryObjectFile.isBinary(file)) {
+            final ObjectFile ofile = new ObjectFile(path, file.getName());
+            try {
+                BinaryObjectFile.read(file, ofile);
+                addFile(ofile, errors);
+            } catch (final IOException e) {
+                errors.add(new Error(path + ": " + e.getMessage(),
+                    SimCodes.PARSE_BAD_BINARY));
+            }
+            return;
+        }
 
         BufferedReader fileReader = null;
         do {
@@ -90,24 +131,7 @@ public class LinkingLoader {
                 break;
             final String fName = file.getName();
             final ObjectFile ofile = new ObjectFile(path, fName, fileReader);
-
-            for (final ObjectFile f : files)
-                if (ofile.getFileName().equals(f.getFileName()))
-                    myerrors.add(new Error(path, SimCodes.UI_DUP_FILE));
-
-            myerrors = ofile.parse();
-
-            if (myerrors.size() != 0)
-                break;
-
-            files.add(ofile);
-            final Set<String> newExt = new HashSet<String>(ofile.getParsedExternals());
-            newExt.removeAll(defined.keySet());
-            undefined.addAll(newExt);
-            undefined.removeAll(ofile.getParsedSymbols().keySet());
-            for (final Entry<String, Location> e : ofile.getParsedSymbols().entrySet())
-                defined.put(e.getKey(),
-                    FileLocation.make(ofile.getFileName(), e.getValue()));
+            myerrors = add(ofile);
         } while (false);
 
         try {
@@ -119,6 +143,47 @@ public class LinkingLoader {
         errors.addAll(myerrors);
     }
 
+    /**
+     * Adds an object module which is already in memory, such as one made by the
+     * Assembler.
+     * 
+     * @param ofile
+     *            The object module
+     * @param errors
+     *            The list of errors that will be used
+     */
+    public void addFile(final ObjectFile ofile, final List<Error> errors) {
+        errors.addAll(add(ofile));
+    }
+
+    /**
+     * Finishes parsing an object file and adds its symbols to the tables.
+     * 
+     * @return the errors found
+     */
+    private List<Error> add(final ObjectFile ofile) {
+        List<Error> myerrors = new ArrayList<Error>();
+        for (final ObjectFile f : files)
+            if (ofile.getFileName().equals(f.getFileName()))
+                myerrors.add(new Error(ofile.getFilePath(), SimCodes.UI_DUP_FILE));
+
+        myerrors = ofile.parse();
+
+        if (myerrors.size() != 0)
+            return myerrors;
+
+        files.add(ofile);
+        if (main == null)
+            main = ofile.getSegName();
+        final Set<String> newExt = new HashSet<String>(ofile.getParsedExternals());
+        newExt.removeAll(defined.keySet());
+        undefined.addAll(newExt);
+        undefined.removeAll(ofile.getParsedSymbols().keySet());
+        for (final Entry<String, Location> e : ofile.getParsedSymbols().entrySet())
+            defined.put(e.getKey(), FileLocation.make(ofile.getFileName(), e.getValue()));
+        return myerrors;
+    }
+
     /**
      * Sets the ipla
      * 
@@ -174,6 +239,22 @@ public class LinkingLoader {
                         + (ipla - newVal + 0x200), SimCodes.LINK_IPLA_OFF_PAGE));
                 m.setMemory(newAddr, (short) (t.getValue() & ~mask | newVal & mask));
             }
+            for (final TextBlock b : ofile.getParsedBlocks()) {
+                final short[] words = b.getWords().clone();
+                final short start = (short) (pla + b.getAddress());
+                for (int i = 0; i < b.getRelocCount(); i++) {
+                    final int index = b.getRelocIndex(i);
+                    final short mask = b.getRelocMask(i);
+                    final short newAddr = (short) (start + index);
+                    final short newVal = (short) ((b.getRelocExternal(i) == null ? pla
+                        : symbols.get(b.getRelocExternal(i))) + (words[index] & mask));
+                    if (mask > 0 && (newVal & ~mask) != (newAddr + 1 & ~mask))
+                        errors.add(new Error(b.getLine(), "try IPLA page offset < "
+                            + (ipla - newVal + 0x200), SimCodes.LINK_IPLA_OFF_PAGE));
+                    words[index] = (short) (words[index] & ~mask | newVal & mask);
+                }
+                m.setMemory(start, words, 0, words.length);
+            }
         }
         final FileLocation fl = defined.get(main);
         m.getPCRegister().setValue(
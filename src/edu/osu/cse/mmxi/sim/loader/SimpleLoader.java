@@ -13,9 +13,9 @@ import java.util.Map.Entry;
 
 import edu.osu.cse.mmxi.common.Location;
 import edu.osu.cse.mmxi.common.error.Error;
+import edu.osu.cse.mmxi.common.object.ObjectFile;
+import edu.osu.cse.mmxi.common.object.Text;
 import edu.osu.cse.mmxi.sim.error.SimCodes;
-import edu.osu.cse.mmxi.sim.loader.parser.ObjectFile;
-import edu.osu.cse.mmxi.sim.loader.parser.Text;
 import edu.osu.cse.mmxi.sim.machine.Machine;
 
 public class SimpleLoader {
@@ -0,0 +1,267 @@
+package edu.osu.cse.mmxi.sim.machine;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+
+/**
+ * <p>
+ * A file of checkpoints of a running Machine. The first checkpoint holds all of memory,
+ * as a {@link Snapshot} does; each later one holds only the pages written to since the
+ * checkpoint before it (see {@link Machine#takeChangedPages()}), so the cost of a
+ * checkpoint follows the pages a program is working on rather than the size of memory.
+ * Every checkpoint holds the registers, PC, flags, clock count and halted flag.
+ * </p>
+ * 
+ * <p>
+ * A Machine is restored by replaying the checkpoints in order. A checkpoint which was
+ * only partly written (as when the simulator was killed while writing it) is ignored, so
+ * the Machine is restored to the last complete checkpoint.
+ * </p>
+ * 
+ * <p>
+ * The changes are found from the Machine's changed pages, which only the checkpoint
+ * stream clears; clearing the dirty pages (as the Console does) loses nothing from the
+ * next checkpoint. All numbers are big-endian.
+ * </p>
+ * 
+ * <pre>
+ *  file          4 bytes  magic "MXC1", then the checkpoints
+ *  checkpoint    2 bytes  page count <i>n</i>
+ *               29 bytes  registers, PC, flags, clock count and halted flag, as in a
+ *                         snapshot file
+ *                1 byte   reserved (0)
+ *                         then for each of the <i>n</i> pages:
+ *                2 bytes  page number
+ *             1024 bytes  the words of the page
+ * </pre>
+ */
+public final class CheckpointStream implements Closeable {
+    /**
+     * The first four bytes of a checkpoint file, "MXC1".
+     */
+    public static final int        MAGIC  = 0x4D584331;
+
+    /**
+     * The size of a checkpoint, not counting its pages.
+     */
+    private static final int       HEADER = 32;
+
+    /**
+     * The size of one page in a checkpoint.
+     */
+    private static final int       PAGE   = 2 + 0x400;
+
+    private final Machine          m;
+    private final RandomAccessFile file;
+    private final FileChannel      ch;
+    private int                    count;
+
+    private CheckpointStream(final Machine _m, final RandomAccessFile _file) {
+        m = _m;
+        file = _file;
+        ch = file.getChannel();
+    }
+
+    /**
+     * Starts a new checkpoint file, replacing the file if it exists. Nothing is written
+     * to it until the first {@link #checkpoint()}.
+     * 
+     * @param m
+     *            the Machine to checkpoint
+     * @param file
+     *            the checkpoint file
+     * @return the checkpoint stream
+     * @throws IOException
+     */
+    public static CheckpointStream create(final Machine m, final File file)
+        throws IOException {
+        final CheckpointStream s = new CheckpointStream(m, new RandomAccessFile(file,
+            "rw"));
+        try {
+            s.ch.truncate(0);
+            final ByteBuffer magic = ByteBuffer.allocate(4);
+            magic.putInt(MAGIC).flip();
+            s.write(magic);
+        } catch (final IOException e) {
+            s.close();
+            throw e;
+        }
+        return s;
+    }
+
+    /**
+     * Restores a Machine from a checkpoint file, and then continues the file: anything
+     * after the last complete checkpoint is cut off, and the next {@link #checkpoint()}
+     * holds the pages written to after the restore.
+     * 
+     * @param m
+     *            the Machine to restore and checkpoint
+     * @param file
+     *            the checkpoint file
+     * @return the checkpoint stream
+     * @throws IOException
+     *             if the file cannot be read or written, or is not a checkpoint file
+     */
+    public static CheckpointStream resume(final Machine m, final File file)
+        throws IOException {
+        final CheckpointStream s = new CheckpointStream(m, new RandomAccessFile(file,
+            "rw"));
+        try {
+            s.replay();
+            s.ch.truncate(s.ch.position());
+        } catch (final IOException e) {
+            s.close();
+            throw e;
+        }
+        return s;
+    }
+
+    /**
+     * Restores a Machine from a checkpoint file, to the state of its last complete
+     * checkpoint.
+     * 
+     * @param m
+     *            the Machine
+     * @param file
+     *            the checkpoint file
+     * @return the number of checkpoints replayed
+     * @throws IOException
+     *             if the file cannot be read, or is not a checkpoint file
+     */
+    public static int restore(final Machine m, final File file) throws IOException {
+        final CheckpointStream s = new CheckpointStream(m, new RandomAccessFile(file,
+            "r"));
+        try {
+            s.replay();
+            return s.count;
+        } finally {
+            s.close();
+        }
+    }
+
+    /**
+     * Tests whether a file is a checkpoint file, by its first four bytes.
+     * 
+     * @param file
+     *            the file
+     * @return whether it starts with {@link #MAGIC}
+     */
+    public static boolean isCheckpointFile(final File file) {
+        try {
+            final DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                return in.readInt() == MAGIC;
+            } finally {
+                in.close();
+            }
+        } catch (final IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes a checkpoint of the Machine's current state, holding all of memory if it is
+     * the first one, and otherwise only the pages written to since the last one.
+     * 
+     * @return the number of pages written
+     * @throws IOException
+     */
+    public int checkpoint() throws IOException {
+        final BitSet pages;
+        if (count == 0) {
+            pages = new BitSet();
+            pages.set(0, 0x80);
+            m.takeChangedPages();
+        } else
+            pages = m.takeChangedPages();
+
+        final int n = pages.cardinality();
+        final ByteBuffer buf = ByteBuffer.allocate(HEADER + n * PAGE);
+        buf.putShort((short) n);
+        Snapshot.putState(m, buf);
+        buf.put((byte) 0);
+        final short[] words = new short[0x200];
+        for (int p = pages.nextSetBit(0); p >= 0; p = pages.nextSetBit(p + 1)) {
+            m.peekPage((byte) p, words);
+            buf.putShort((short) p);
+            buf.asShortBuffer().put(words);
+            buf.position(buf.position() + 0x400);
+        }
+        buf.flip();
+        write(buf);
+        count++;
+        return n;
+    }
+
+    /**
+     * @return the number of checkpoints in the file
+     */
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private void write(final ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining())
+            ch.write(buf);
+    }
+
+    /**
+     * Reads into a buffer until it is full or the end of the file is reached.
+     * 
+     * @return whether the buffer was filled
+     */
+    private boolean read(final ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining())
+            if (ch.read(buf) < 0)
+                return false;
+        buf.flip();
+        return true;
+    }
+
+    /**
+     * Replays every complete checkpoint in the file into the Machine, leaving the
+     * channel positioned after the last one.
+     */
+    private void replay() throws IOException {
+        final ByteBuffer magic = ByteBuffer.allocate(4);
+        if (!read(magic) || magic.getInt() != MAGIC)
+            throw new IOException("not a checkpoint file");
+        final short[] words = new short[0x200];
+        while (true) {
+            final long start = ch.position();
+            final ByteBuffer header = ByteBuffer.allocate(HEADER);
+            if (!read(header)) {
+                ch.position(start);
+                break;
+            }
+            final ByteBuffer pages = ByteBuffer.allocate((header.getShort() & 0xFFFF)
+                * PAGE);
+            if (!read(pages)) {
+                ch.position(start);
+                break;
+            }
+            Snapshot.getState(m, header);
+            while (pages.hasRemaining()) {
+                final int p = pages.getShort() & 0x7F;
+                pages.asShortBuffer().get(words);
+                pages.position(pages.position() + 0x400);
+                m.setMemory((short) (p << 9), words, 0, words.length);
+            }
+            count++;
+        }
+        m.clearDirtyPages();
+        m.takeChangedPages();
+    }
+}
@@ -1,17 +1,32 @@
 package edu.osu.cse.mmxi.sim.machine;
 
-import edu.osu.cse.mmxi.common.Utilities;
+import edu.osu.cse.mmxi.common.XorShift;
 
 /**
  * A specific Register that comes with an atomic operation for retrieving and incrementing
  * the Program Counter as an atomic operation.
+ * 
+ * The flags are evaluated lazily: {@link #setFlags(short)}, which every ALU and load
+ * instruction calls, only records the result, and the n, z and p bits are derived from
+ * it the next time the register is read (by a {@code BRx}, the Console, {@code DBUG} or
+ * a trace) or written.
  */
 public class FlagsRegister extends Register {
+    /**
+     * Marks that no result is pending.
+     */
+    private static final int NONE    = Integer.MIN_VALUE;
 
-    public FlagsRegister(final Short fill) {
+    /**
+     * The result the flags were last set from, or {@link #NONE} if the bits in the
+     * register value are up to date.
+     */
+    private int              pending = NONE;
+
+    public FlagsRegister(final Short fill, final XorShift random) {
         this(false, false, false);
         if (fill == null)
-            registerValue = (short) (1 << (Utilities.randomShort() & 0xFFFF) % 3);
+            registerValue = (short) (1 << (random.nextShort() & 0xFFFF) % 3);
         else
             setFlags(fill);
     }
@@ -34,6 +49,7 @@ public class FlagsRegister extends Register {
     }
 
     private boolean getFlag(final int index) {
+        resolve();
         return (registerValue & 1 << index) != 0;
     }
 
@@ -50,6 +66,7 @@ public class FlagsRegister extends Register {
     }
 
     private void setFlag(final int index, final boolean val) {
+        resolve();
         if (val)
             registerValue |= 1 << index;
         else
@@ -61,9 +78,37 @@ public class FlagsRegister extends Register {
     }
 
     public void setFlags(final short s) {
-        setN(s < 0);
-        setZ(s == 0);
-        setP(s > 0);
+        pending = s;
+    }
+
+    /**
+     * Brings the n, z and p bits of the register value up to date with the pending
+     * result, if there is one.
+     */
+    private void resolve() {
+        if (pending != NONE) {
+            registerValue = (short) (registerValue & ~7 | (pending < 0 ? 4 : pending == 0
+                ? 2 : 1));
+            pending = NONE;
+        }
+    }
+
+    @Override
+    public short getValue() {
+        resolve();
+        return super.getValue();
+    }
+
+    @Override
+    public void setValue(final short newValue) {
+        pending = NONE;
+        super.setValue(newValue);
+    }
+
+    @Override
+    public short increment() {
+        resolve();
+        return super.increment();
     }
 
     @Override
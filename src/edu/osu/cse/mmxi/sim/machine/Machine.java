@@ -1,9 +1,15 @@
 package edu.osu.cse.mmxi.sim.machine;
 
+import java.util.Arrays;
+import java.util.BitSet;
+import edu.osu.cse.mmxi.common.XorShift;
+import edu.osu.cse.mmxi.sim.SimulationContext;
 import edu.osu.cse.mmxi.sim.machine.interpreter.ALU;
 import edu.osu.cse.mmxi.sim.machine.interpreter.Interpreter;
 import edu.osu.cse.mmxi.sim.machine.memory.FillMemory;
+import edu.osu.cse.mmxi.sim.machine.memory.FlatMemory;
 import edu.osu.cse.mmxi.sim.machine.memory.Memory;
+import edu.osu.cse.mmxi.sim.machine.memory.PagedMemory;
 import edu.osu.cse.mmxi.sim.machine.memory.RandomizedMemory;
 import edu.osu.cse.mmxi.sim.ui.SimUI;
 
@@ -13,32 +19,109 @@ public class Machine {
     private Register         pc;
     private FlagsRegister    nzp;
     private Memory           memory;
-    public final ALU         alu;
+    public ALU               alu;
 
-    private int              clockCount;
+    private long             clockCount;
     private boolean          halted;
 
+    private Short            fill;
+    private boolean          flatMemory;
+
+    private final SimulationContext context;
+    private XorShift                random;
+
+    /**
+     * The listener told about writes to watched locations, the memory words being
+     * watched (one bit for each address), and the registers being watched (one bit for
+     * each register number).
+     */
+    private WriteListener           listener;
+    private final long[]            watchedWords;
+    private int                     watchedRegisters;
+
     public SimUI                ui;
 
     public Machine() {
+        this(new SimulationContext());
+    }
+
+    /**
+     * Creates a Machine with the given run settings. If the context has a seed, the
+     * Machine's random number generator is seeded with it, so that randomized memory and
+     * registers are the same on every run.
+     * 
+     * @param _context
+     *            the settings of this Machine's run
+     */
+    public Machine(final SimulationContext _context) {
+        context = _context;
         ui = new SimUI();
         registers = new Register[8];
+        watchedWords = new long[0x400];
         alu = new Interpreter(this);
+        random = new XorShift();
         reset(null);
     }
 
-    public void reset(final Short fill) {
+    /**
+     * Creates a fork of another Machine, as by {@link #fork()}.
+     */
+    private Machine(final Machine parent) {
+        context = parent.context;
+        ui = parent.ui;
+        registers = new Register[8];
+        watchedWords = new long[0x400];
+        for (int i = 0; i < 8; i++)
+            registers[i] = new Register(parent.registers[i].getValue());
+        pc = new Register(parent.pc.getValue());
+        nzp = new FlagsRegister(false, false, false);
+        nzp.setValue(parent.nzp.getValue());
+        clockCount = parent.clockCount;
+        halted = parent.halted;
+        fill = parent.fill;
+        flatMemory = parent.flatMemory;
+        random = context.getSeed() != null ? new XorShift(context.getSeed())
+            : new XorShift();
+        memory = parent.memory.fork(random);
+        alu = parent.alu.fork(this);
+    }
+
+    public void reset(final Short _fill) {
+        reset(_fill, flatMemory);
+    }
+
+    /**
+     * Resets the Machine with the given fill mode and memory implementation, as
+     * {@link #reset(Short)} and {@link #setFlatMemory(boolean)} together would, but
+     * building the memory only once.
+     * 
+     * @param _fill
+     *            the fill value, or {@code null} for random memory and registers
+     * @param flat
+     *            {@code true} to use a single flat array for memory
+     */
+    public void reset(final Short _fill, final boolean flat) {
+        flatMemory = flat;
         clockCount = 1;
         halted = false;
+        fill = _fill;
+        if (context.getSeed() != null)
+            random = new XorShift(context.getSeed());
 
-        for (int i = 0; i < 8; i++)
-            registers[i] = new Register(fill);
-        pc = new Register(fill);
-        nzp = new FlagsRegister(fill);
-        if (fill == null)
-            memory = new RandomizedMemory();
+        for (int i = 0; i < 8; i++) {
+            registers[i] = new Register(fill, random);
+            if ((watchedRegisters >> i & 1) != 0)
+                registers[i].setListener(listener, i);
+        }
+        pc = new Register(fill, random);
+        nzp = new FlagsRegister(fill, random);
+        if (flatMemory)
+            memory = fill == null ? new FlatMemory(random) : new FlatMemory(fill);
+        else if (fill == null)
+            memory = new RandomizedMemory(random);
         else
             memory = new FillMemory(fill);
+        alu.invalidateAll();
     }
 
     /**
@@ -83,6 +166,9 @@ public class Machine {
      */
     public void setMemory(final short absoluteAddress, final short value) {
         memory.setMemory(absoluteAddress, value);
+        alu.invalidate(absoluteAddress);
+        if (listener != null)
+            written(absoluteAddress);
     }
 
     /**
@@ -98,6 +184,192 @@ public class Machine {
      */
     public void setMemory(final byte page, final short pageOffset, final short value) {
         memory.setMemory(page, pageOffset, value);
+        alu.invalidate((short) (page << 9 | pageOffset));
+        if (listener != null)
+            written((short) (page << 9 | pageOffset));
+    }
+
+    /**
+     * Copies a block of 16-bit words out of the Machine's memory, starting at the
+     * absolute memory address. Addresses wrap around from xFFFF to x0000.
+     * 
+     * @param absoluteAddress
+     *            16-bit representation of the absolute memory address of the first word.
+     * @param values
+     *            the array to store the words in.
+     * @param offset
+     *            the index in {@code values} of the first word.
+     * @param length
+     *            the number of words to copy.
+     */
+    public void getMemory(final short absoluteAddress, final short[] values,
+        final int offset, final int length) {
+        memory.getMemory(absoluteAddress, values, offset, length);
+    }
+
+    /**
+     * Copies a whole page of the Machine's memory without marking it as accessed, for
+     * saving the Machine's state.
+     * 
+     * @param page
+     *            the page number
+     * @param values
+     *            the array of 512 words to store the page in
+     */
+    public void peekPage(final byte page, final short[] values) {
+        memory.peekPage(page, values);
+    }
+
+    /**
+     * Copies a block of 16-bit words into the Machine's memory, starting at the absolute
+     * memory address. Addresses wrap around from xFFFF to x0000.
+     * 
+     * @param absoluteAddress
+     *            16-bit representation of the absolute memory address of the first word.
+     * @param values
+     *            the array holding the words to store.
+     * @param offset
+     *            the index in {@code values} of the first word.
+     * @param length
+     *            the number of words to store.
+     */
+    public void setMemory(final short absoluteAddress, final short[] values,
+        final int offset, final int length) {
+        memory.setMemory(absoluteAddress, values, offset, length);
+        for (int i = 0; i < length; i++) {
+            alu.invalidate((short) (absoluteAddress + i));
+            if (listener != null)
+                written((short) (absoluteAddress + i));
+        }
+    }
+
+    /**
+     * Tells the listener about a write to memory, if the address is watched.
+     */
+    private void written(final short address) {
+        if ((watchedWords[(address & 0xFFFF) >> 6] & 1L << address) != 0)
+            listener.memoryWritten(address);
+    }
+
+    /**
+     * Sets the listener which is told about writes to the watched registers and words of
+     * memory. Other writes are not reported, so a Machine with a listener only runs
+     * slower on the instructions which write to watched locations.
+     * 
+     * @param _listener
+     *            the listener, or {@code null} for none
+     */
+    public void setWriteListener(final WriteListener _listener) {
+        listener = _listener;
+        for (int i = 0; i < 8; i++)
+            if ((watchedRegisters >> i & 1) != 0)
+                registers[i].setListener(listener, i);
+    }
+
+    /**
+     * Starts or stops reporting writes to a word of memory to the write listener.
+     * 
+     * @param address
+     *            the absolute address of the word
+     * @param watch
+     *            whether to report writes to it
+     */
+    public void watchMemory(final short address, final boolean watch) {
+        if (watch)
+            watchedWords[(address & 0xFFFF) >> 6] |= 1L << address;
+        else
+            watchedWords[(address & 0xFFFF) >> 6] &= ~(1L << address);
+    }
+
+    /**
+     * Starts or stops reporting writes to a general purpose register to the write
+     * listener.
+     * 
+     * @param index
+     *            the number of the register
+     * @param watch
+     *            whether to report writes to it
+     */
+    public void watchRegister(final int index, final boolean watch) {
+        if (watch)
+            watchedRegisters |= 1 << index;
+        else
+            watchedRegisters &= ~(1 << index);
+        registers[index].setListener(watch ? listener : null, index);
+    }
+
+    /**
+     * Stops reporting writes to every register and word of memory.
+     */
+    public void clearWatches() {
+        Arrays.fill(watchedWords, 0);
+        for (int i = 0; i < 8; i++)
+            if ((watchedRegisters >> i & 1) != 0)
+                registers[i].setListener(null, i);
+        watchedRegisters = 0;
+    }
+
+    /**
+     * Retrieves the pages of memory which have been written to since the dirty pages
+     * were last cleared, or since the last reset.
+     * 
+     * @return the set of page numbers
+     */
+    public BitSet getDirtyPages() {
+        return memory.getDirtyPages();
+    }
+
+    /**
+     * Retrieves the pages of memory which have been read from or written to since the
+     * accessed pages were last cleared, or since the last reset.
+     * 
+     * @return the set of page numbers
+     */
+    public BitSet getAccessedPages() {
+        return memory.getAccessedPages();
+    }
+
+    /**
+     * Marks every page of memory as not written to.
+     */
+    public void clearDirtyPages() {
+        memory.clearDirtyPages();
+    }
+
+    /**
+     * Marks every page of memory as not accessed.
+     */
+    public void clearAccessedPages() {
+        memory.clearAccessedPages();
+    }
+
+    /**
+     * Retrieves the pages of memory which have been written to since the last call, or
+     * since the last reset, and marks them as unchanged. Unlike the dirty pages, these
+     * are only cleared here, so they belong to one consumer, the checkpoint stream.
+     * 
+     * @return the set of page numbers
+     */
+    public BitSet takeChangedPages() {
+        return memory.takeChangedPages();
+    }
+
+    /**
+     * Forks this Machine, making a new one in the same state: the same registers, clock
+     * count and memory, and an ALU of the same kind. With paged memory, no memory is
+     * copied up front; the two Machines share their pages until one of them writes to a
+     * page (see {@link PagedMemory#fork(XorShift)}), so many forks of one loaded program
+     * only cost the pages that each of them changes.
+     * 
+     * The fork shares this Machine's context and UI; a fork which is to be run on
+     * another thread should be given its own UI. The write listener and watched
+     * locations are not carried over. This Machine must not be running while it is
+     * forked.
+     * 
+     * @return the new Machine
+     */
+    public Machine fork() {
+        return new Machine(this);
     }
 
     /**
@@ -116,15 +388,35 @@ public class Machine {
         halted = true;
     }
 
+    /**
+     * Sets whether the Machine has halted, as when restoring a {@link Snapshot}.
+     * 
+     * @param _halted
+     *            whether the Machine has halted
+     */
+    public void setHalted(final boolean _halted) {
+        halted = _halted;
+    }
+
     /**
      * The number of instructions that have been executed since the Machine began.
      * 
      * The clock count is incremented with each clock cycle.
      */
-    public int clockCount() {
+    public long clockCount() {
         return clockCount;
     }
 
+    /**
+     * Sets the clock count, as when restoring a {@link Snapshot}.
+     * 
+     * @param count
+     *            the new clock count
+     */
+    public void setClockCount(final long count) {
+        clockCount = count;
+    }
+
     /**
      * Executes the next clock cycle.
      */
@@ -134,6 +426,63 @@ public class Machine {
         alu.executeNextInstruction(nextInstruction());
     }
 
+    /**
+     * Advances the clock count for instructions that the ALU executed directly, without
+     * going through {@link #stepClock()}.
+     * 
+     * @param ticks
+     *            the number of instructions executed
+     */
+    public void advanceClock(final int ticks) {
+        clockCount += ticks;
+    }
+
+    /**
+     * Replaces the ALU that executes instructions on this Machine.
+     * 
+     * @param _alu
+     *            the new ALU, which must have been constructed for this Machine
+     */
+    public void setALU(final ALU _alu) {
+        alu = _alu;
+    }
+
+    /**
+     * Chooses between a {@link FlatMemory} and a paged memory implementation, and resets
+     * the Machine with the current fill mode so that the change takes effect.
+     * 
+     * @param flat
+     *            {@code true} to use a single flat array for memory
+     */
+    public void setFlatMemory(final boolean flat) {
+        reset(fill, flat);
+    }
+
+    /**
+     * Sets the seed of this Machine's random number generator, and resets the Machine
+     * with the current fill mode so that it takes effect.
+     * 
+     * @param seed
+     *            the new seed, or {@code null} to seed from the system time
+     */
+    public void setSeed(final Long seed) {
+        context.setSeed(seed);
+        if (seed == null)
+            random = new XorShift();
+        reset(fill);
+    }
+
+    public SimulationContext getContext() {
+        return context;
+    }
+
+    /**
+     * @return this Machine's random number generator
+     */
+    public XorShift getRandom() {
+        return random;
+    }
+
     public Register getRegister(final int index) {
         return registers[index];
     }
@@ -1,13 +1,33 @@
 package edu.osu.cse.mmxi.sim.machine;
 
-import edu.osu.cse.mmxi.common.Utilities;
+import edu.osu.cse.mmxi.common.XorShift;
 
 public class Register {
 
-    protected short registerValue;
+    protected short       registerValue;
 
-    public Register(final Short fill) {
-        registerValue = fill == null ? Utilities.randomShort() : fill;
+    /**
+     * The listener told about writes to this register, or {@code null} if it is not
+     * watched, and the register number given to it.
+     */
+    private WriteListener listener;
+    private int           index;
+
+    public Register(final short value) {
+        registerValue = value;
+    }
+
+    /**
+     * Creates a register holding the fill value, or a random value if the fill is
+     * {@code null}.
+     * 
+     * @param fill
+     *            the initial value, or {@code null} for a random one
+     * @param random
+     *            the random number generator to use
+     */
+    public Register(final Short fill, final XorShift random) {
+        registerValue = fill == null ? random.nextShort() : fill;
     }
 
     /**
@@ -23,6 +43,21 @@ public class Register {
      */
     public void setValue(final short newValue) {
         registerValue = newValue;
+        if (listener != null)
+            listener.registerWritten(index);
+    }
+
+    /**
+     * Watches writes to this register, as set up by {@link Machine#watchRegister}.
+     * 
+     * @param _listener
+     *            the listener to tell about every write, or {@code null} to stop watching
+     * @param _index
+     *            the register number to report
+     */
+    public void setListener(final WriteListener _listener, final int _index) {
+        listener = _listener;
+        index = _index;
     }
 
     /**
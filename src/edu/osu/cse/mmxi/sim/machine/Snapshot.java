@@ -0,0 +1,156 @@
+package edu.osu.cse.mmxi.sim.machine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * <p>
+ * Saves the full state of a Machine to a file, and restores it again, so that a long run
+ * can be checkpointed and resumed, or many runs can be started from one loaded state.
+ * The file has a fixed layout and size, and is read and written through a memory-mapped
+ * buffer, with each page of memory moved in one bulk transfer.
+ * </p>
+ * 
+ * <p>
+ * All numbers are big-endian.
+ * </p>
+ * 
+ * <pre>
+ *  offset   size
+ *       0      4  magic "MXS1"
+ *       4     16  registers R0 to R7
+ *      20      2  PC
+ *      22      2  flags
+ *      24      8  clock count
+ *      32      1  1 if the Machine has halted, otherwise 0
+ *      33      7  reserved (0)
+ *      40 131072  memory, x0000 to xFFFF
+ * </pre>
+ * 
+ * <p>
+ * The ALU and the Machine's settings (the clock limit, IPLA, memory type and random
+ * number generator) are not part of the snapshot. Saving reads every page of memory, so
+ * pages of a randomized memory which were not yet used are filled in at that point, but
+ * it does not mark them as accessed.
+ * </p>
+ */
+public final class Snapshot {
+    /**
+     * The first four bytes of a snapshot file, "MXS1".
+     */
+    public static final int  MAGIC  = 0x4D585331;
+
+    /**
+     * The offset of memory in a snapshot file.
+     */
+    private static final int HEADER = 40;
+
+    /**
+     * The size of a snapshot file.
+     */
+    public static final int  SIZE   = HEADER + 0x20000;
+
+    /**
+     * The number of bytes written by {@link #putState(Machine, ByteBuffer)}.
+     */
+    static final int         STATE  = 29;
+
+    private Snapshot() {}
+
+    /**
+     * Saves the state of a Machine to a file, replacing the file if it exists.
+     * 
+     * @param m
+     *            the Machine
+     * @param file
+     *            the snapshot file
+     * @throws IOException
+     */
+    public static void save(final Machine m, final File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(SIZE);
+            final MappedByteBuffer buf = raf.getChannel()
+                .map(MapMode.READ_WRITE, 0, SIZE);
+            buf.putInt(MAGIC);
+            putState(m, buf);
+            buf.put(new byte[HEADER - buf.position()]);
+
+            final ShortBuffer mem = buf.asShortBuffer();
+            final short[] page = new short[0x200];
+            for (int p = 0; p < 0x80; p++) {
+                m.peekPage((byte) p, page);
+                mem.put(page);
+            }
+            buf.force();
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Restores the state of a Machine from a file.
+     * 
+     * @param m
+     *            the Machine
+     * @param file
+     *            the snapshot file
+     * @throws IOException
+     *             if the file cannot be read, or is not a snapshot file; the Machine is
+     *             unchanged in that case
+     */
+    public static void restore(final Machine m, final File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel ch = raf.getChannel();
+            if (ch.size() != SIZE)
+                throw new IOException("not a snapshot file: " + file);
+            final MappedByteBuffer buf = ch.map(MapMode.READ_ONLY, 0, SIZE);
+            if (buf.getInt() != MAGIC)
+                throw new IOException("not a snapshot file: " + file);
+            getState(m, buf);
+            buf.position(HEADER);
+
+            final ShortBuffer mem = buf.asShortBuffer();
+            final short[] page = new short[0x200];
+            for (int p = 0; p < 0x80; p++) {
+                mem.get(page);
+                m.setMemory((short) (p << 9), page, 0, page.length);
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Writes the registers, PC, flags, clock count and halted flag of a Machine into a
+     * buffer, in the order of the snapshot file layout.
+     */
+    static void putState(final Machine m, final ByteBuffer buf) {
+        for (int i = 0; i < 8; i++)
+            buf.putShort(m.getRegister(i).getValue());
+        buf.putShort(m.getPCRegister().getValue());
+        buf.putShort(m.getFlags().getValue());
+        buf.putLong(m.clockCount());
+        buf.put((byte) (m.hasHalted() ? 1 : 0));
+    }
+
+    /**
+     * Reads the state written by {@link #putState(Machine, ByteBuffer)} back into a
+     * Machine.
+     */
+    static void getState(final Machine m, final ByteBuffer buf) {
+        for (int i = 0; i < 8; i++)
+            m.getRegister(i).setValue(buf.getShort());
+        m.getPCRegister().setValue(buf.getShort());
+        m.getFlags().setValue(buf.getShort());
+        m.setClockCount(buf.getLong());
+        m.setHalted(buf.get() != 0);
+    }
+}
@@ -0,0 +1,168 @@
+package edu.osu.cse.mmxi.sim.machine;
+
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.ADD;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.AND;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.JSR;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.JSRR;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.LD;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.LDI;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.LDR;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.LEA;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.NOT;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.ST;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.STI;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.STR;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.TRAP;
+
+/**
+ * <p>
+ * A log of the instructions a Machine has executed, which allows them to be undone one at
+ * a time, most recent first. Each MMXI instruction changes at most one register or one
+ * word of memory besides the PC and flags, so before an instruction is executed,
+ * {@link #record(Machine)} decodes it and saves the PC, the flags, the halted flag, and
+ * the old value of whatever it is about to overwrite.
+ * </p>
+ * 
+ * <p>
+ * The log is a ring buffer of a fixed number of entries, so its size does not grow on a
+ * long run: once it is full, each new entry replaces the oldest one. Only the state of
+ * the Machine is undone; characters already printed or read, and numbers already drawn
+ * by {@code TRAP RND}, are not given back.
+ * </p>
+ */
+public final class UndoLog {
+    /**
+     * The value of {@link #target} for an instruction which writes a word of memory.
+     */
+    private static final byte MEMORY = 8;
+
+    /**
+     * The value of {@link #target} for an instruction which writes neither a register nor
+     * memory.
+     */
+    private static final byte NONE   = -1;
+
+    private final short[]     pcs;
+    private final byte[]      flags;
+    private final byte[]      target;
+    private final short[]     addrs;
+    private final short[]     values;
+
+    /**
+     * The index of the next entry to be written.
+     */
+    private int               head;
+
+    /**
+     * The number of entries in the log.
+     */
+    private int               size;
+
+    /**
+     * Creates an empty log.
+     * 
+     * @param capacity
+     *            the number of instructions to remember
+     */
+    public UndoLog(final int capacity) {
+        pcs = new short[capacity];
+        flags = new byte[capacity];
+        target = new byte[capacity];
+        addrs = new short[capacity];
+        values = new short[capacity];
+    }
+
+    /**
+     * Records the state that the next instruction of the Machine (the one at the PC) is
+     * about to overwrite. This must be called just before the instruction is executed.
+     * 
+     * @param m
+     *            the Machine
+     */
+    public void record(final Machine m) {
+        final short pc = m.getPCRegister().getValue();
+        final int inst = m.getMemory(pc) & 0xFFFF;
+        final int dr = inst >> 9 & 7;
+        final short pgaddr = (short) (pc + 1 & 0xFE00 | inst & 0x1FF);
+        final int i = head;
+        pcs[i] = pc;
+        flags[i] = (byte) (m.getFlags().getValue() | (m.hasHalted() ? 8 : 0));
+        switch (inst >> 12) {
+        case ADD:
+        case AND:
+        case LD:
+        case LDR:
+        case LDI:
+        case LEA:
+        case NOT:
+            target[i] = (byte) dr;
+            break;
+        case JSR:
+        case JSRR:
+            target[i] = (inst & 0x800) != 0 ? 7 : NONE;
+            break;
+        case TRAP:
+            target[i] = 0;
+            break;
+        case ST:
+            target[i] = MEMORY;
+            addrs[i] = pgaddr;
+            break;
+        case STR:
+            target[i] = MEMORY;
+            addrs[i] = (short) (m.getRegister(inst >> 6 & 7).getValue() + (inst & 0x3F));
+            break;
+        case STI:
+            target[i] = MEMORY;
+            addrs[i] = m.getMemory(pgaddr);
+            break;
+        default:
+            target[i] = NONE;
+        }
+        if (target[i] == MEMORY)
+            values[i] = m.getMemory(addrs[i]);
+        else if (target[i] != NONE)
+            values[i] = m.getRegister(target[i]).getValue();
+        head = (i + 1) % pcs.length;
+        size = Math.min(size + 1, pcs.length);
+    }
+
+    /**
+     * Undoes the most recently recorded instruction, returning the Machine to the state
+     * it was in just before the instruction was executed, and removes it from the log.
+     * 
+     * @param m
+     *            the Machine
+     * @return {@code false} if the log was empty
+     */
+    public boolean undo(final Machine m) {
+        if (size == 0)
+            return false;
+        final int i = head = (head + pcs.length - 1) % pcs.length;
+        size--;
+        if (target[i] == MEMORY)
+            m.setMemory(addrs[i], values[i]);
+        else if (target[i] != NONE)
+            m.getRegister(target[i]).setValue(values[i]);
+        m.getPCRegister().setValue(pcs[i]);
+        m.getFlags().setValue((short) (flags[i] & 7));
+        m.setHalted((flags[i] & 8) != 0);
+        m.setClockCount(m.clockCount() - 1);
+        return true;
+    }
+
+    /**
+     * @return the number of instructions which can be undone
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Empties the log, as when the Machine's state is changed by something other than
+     * executing instructions.
+     */
+    public void clear() {
+        size = 0;
+    }
+}
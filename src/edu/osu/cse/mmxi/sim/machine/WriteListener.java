@@ -0,0 +1,26 @@
+package edu.osu.cse.mmxi.sim.machine;
+
+/**
+ * Is told when a watched register or word of memory of a Machine is written to (see
+ * {@link Machine#setWriteListener(WriteListener)}). Writes to locations which are not
+ * watched are not reported, so they cost no more than a test of a bit.
+ */
+public interface WriteListener {
+    /**
+     * Called after a watched word of memory has been written to, whether or not its value
+     * changed.
+     * 
+     * @param address
+     *            the absolute address of the word
+     */
+    void memoryWritten(short address);
+
+    /**
+     * Called after a watched general purpose register has been written to, whether or
+     * not its value changed.
+     * 
+     * @param index
+     *            the number of the register
+     */
+    void registerWritten(int index);
+}
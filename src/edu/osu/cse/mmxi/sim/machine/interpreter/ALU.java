@@ -8,10 +8,47 @@ public interface ALU {
 
     public void executeNextInstruction(short s);
 
+    /**
+     * Executes up to the given number of instructions on the Machine, starting at the PC,
+     * stopping early if the Machine halts. The Machine's clock count is advanced by the
+     * number of instructions executed, exactly as if {@link Machine#stepClock()} had been
+     * called once for each of them.
+     * 
+     * @param steps
+     *            the maximum number of instructions to execute
+     * @return the number of instructions actually executed
+     */
+    public int execute(int steps);
+
     public String readInstruction(short inst);
 
     public String readInstructionAt(short mem);
 
     public String readInstruction(short inst, Machine context, Map<String, Short> symb);
 
+    /**
+     * Notifies the ALU that the word at the given address has been overwritten, so that
+     * any decoded form of it that the ALU is holding onto must be discarded.
+     * 
+     * @param address
+     *            the absolute memory address that was written
+     */
+    public void invalidate(short address);
+
+    /**
+     * Notifies the ALU that all of memory has been replaced (as on a reset), so that
+     * every decoded instruction it is holding onto must be discarded.
+     */
+    public void invalidateAll();
+
+    /**
+     * Creates an ALU of the same kind as this one, for another Machine (as when the
+     * Machine is forked).
+     * 
+     * @param m
+     *            the Machine the new ALU executes instructions on
+     * @return the new ALU
+     */
+    public ALU fork(Machine m);
+
 }
@@ -0,0 +1,50 @@
+package edu.osu.cse.mmxi.sim.machine.interpreter;
+
+import edu.osu.cse.mmxi.sim.machine.Machine;
+
+/**
+ * A basic block of instructions which has been compiled to JVM bytecode by the
+ * {@link BlockCompiler}. Each compiled block is a subclass of this one, generated at run
+ * time, whose {@link #run(int[], Machine)} method executes the block's instructions on
+ * primitive copies of the registers.
+ */
+public abstract class Block {
+    /**
+     * The indices of the PC and the flags in the state array; indices 0 to 7 are the
+     * general purpose registers.
+     */
+    public static final int PC = 8, FLAGS = 9;
+
+    /**
+     * The address of the first instruction of the block, and the number of instructions
+     * in it.
+     */
+    int                     start, length;
+
+    /**
+     * Set when a word of the block is overwritten, so that a running block stops after
+     * the store which overwrote it instead of executing stale code.
+     */
+    protected boolean       stale;
+
+    /**
+     * Executes the block. The state array holds the general purpose registers (as
+     * sign-extended 16-bit values), the unsigned PC and the flags, at the indices given
+     * by {@link #PC} and {@link #FLAGS}; it is read on entry and written on exit.
+     * 
+     * @param state
+     *            the registers, PC and flags
+     * @param m
+     *            the Machine, whose memory the block reads and writes
+     * @return the number of instructions executed, which is less than the length of the
+     *         block if it became stale
+     */
+    public abstract int run(int[] state, Machine m);
+
+    /**
+     * @return the flags register value (4 = n, 2 = z, 1 = p) for a result
+     */
+    protected static int flags(final int value) {
+        return value < 0 ? 4 : value == 0 ? 2 : 1;
+    }
+}
@@ -0,0 +1,579 @@
+package edu.osu.cse.mmxi.sim.machine.interpreter;
+
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.ADD;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.AND;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.BRx;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.DBUG;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.JSR;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.JSRR;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.LD;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.LDI;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.LDR;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.LEA;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.NOT;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.RET;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.ST;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.STI;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.STR;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.TRAP;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.osu.cse.mmxi.sim.machine.Machine;
+
+/**
+ * <p>
+ * Compiles basic blocks of machine code into JVM classes, for the {@link JitInterpreter}.
+ * </p>
+ * 
+ * <p>
+ * A block starts at any address, and runs up to and including the first {@code BRx},
+ * {@code JSR}, {@code JSRR} or {@code RET}, or until it is {@link #MAX_LENGTH}
+ * instructions long. It stops before a {@code TRAP} or {@code DBUG}, since those need
+ * the Machine itself and are left to the interpreter; a block which would start with
+ * one is empty, and is not compiled.
+ * </p>
+ * 
+ * <p>
+ * The generated class extends {@link Block}. Its {@code run} method copies the registers
+ * and flags out of the state array into local variables, executes the instructions on
+ * them (with every address which depends only on the PC computed at compile time), and
+ * copies them back along with the new PC. After a store which may have overwritten the
+ * block, it checks {@link Block#stale} and returns early if it is set. Each block is
+ * defined by its own class loader, so that a block which is discarded can be unloaded.
+ * </p>
+ */
+final class BlockCompiler {
+    /**
+     * The most instructions compiled into one block.
+     */
+    public static final int     MAX_LENGTH = 64;
+
+    private static final String BLOCK      = Block.class.getName().replace('.', '/'),
+        MACHINE = Machine.class.getName().replace('.', '/');
+
+    /**
+     * The local variables of the {@code run} method, after the state array (1) and the
+     * Machine (2): the eight registers and the flags.
+     */
+    private static final int    R          = 3, NZP = 11, LOCALS = 12;
+
+    private static final int    ALOAD_0    = 0x2A, ALOAD_1 = 0x2B, ALOAD_2 = 0x2C,
+        ICONST_M1 = 0x02, BIPUSH = 0x10, SIPUSH = 0x11, LDC_W = 0x13, ILOAD = 0x15,
+        ISTORE = 0x36, IALOAD = 0x2E, IASTORE = 0x4F, DUP = 0x59, IADD = 0x60,
+        IAND = 0x7E, IXOR = 0x82, I2C = 0x92, I2S = 0x93, IFEQ = 0x99, IRETURN = 0xAC,
+        RETURN = 0xB1, GETFIELD = 0xB4, INVOKEVIRTUAL = 0xB6, INVOKESPECIAL = 0xB7,
+        INVOKESTATIC = 0xB8;
+
+    /**
+     * Loads the class of a single block.
+     */
+    private static final class Loader extends ClassLoader {
+        Loader() {
+            super(Block.class.getClassLoader());
+        }
+
+        Class<?> define(final String name, final byte[] b) {
+            return defineClass(name, b, 0, b.length);
+        }
+    }
+
+    private final Machine               m;
+    private final int                   start;
+    private final String                name;
+
+    private final List<byte[]>          pool    = new ArrayList<byte[]>();
+    private final Map<String, Integer>  indices = new HashMap<String, Integer>();
+    private final ByteArrayOutputStream code    = new ByteArrayOutputStream();
+
+    /**
+     * The offsets of the branch targets in the code, each of which needs a stack map
+     * frame.
+     */
+    private final List<Integer>         frames  = new ArrayList<Integer>();
+
+    private BlockCompiler(final Machine _m, final int _start) {
+        m = _m;
+        start = _start;
+        name = String.format("%s_%04X", BLOCK, start);
+    }
+
+    /**
+     * Finds the length of the block starting at an address.
+     * 
+     * @param m
+     *            the Machine whose memory holds the block
+     * @param start
+     *            the address of the first instruction
+     * @return the number of instructions in the block, which is 0 if it starts with a
+     *         {@code TRAP} or {@code DBUG}
+     */
+    public static int length(final Machine m, final int start) {
+        int n = 0;
+        while (n < MAX_LENGTH) {
+            final int op = m.getMemory((short) (start + n)) >> 12 & 0xF;
+            if (op == TRAP || op == DBUG)
+                break;
+            n++;
+            if (op == BRx || op == JSR || op == JSRR || op == RET)
+                break;
+        }
+        return n;
+    }
+
+    /**
+     * Compiles the block starting at an address.
+     * 
+     * @param m
+     *            the Machine whose memory holds the block
+     * @param start
+     *            the address of the first instruction
+     * @return the compiled block, or {@code null} if the block is empty
+     */
+    public static Block compile(final Machine m, final int start) {
+        final int length = length(m, start);
+        if (length == 0)
+            return null;
+        final Block b;
+        try {
+            final BlockCompiler c = new BlockCompiler(m, start);
+            b = new Loader().define(c.name.replace('/', '.'), c.build(length))
+                .asSubclass(Block.class).getDeclaredConstructor().newInstance();
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        } catch (final NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        } catch (final InvocationTargetException e) {
+            throw new IllegalStateException(e);
+        } catch (final InstantiationException e) {
+            throw new IllegalStateException(e);
+        } catch (final IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        b.start = start;
+        b.length = length;
+        return b;
+    }
+
+    /**
+     * Generates the class file of the block.
+     */
+    private byte[] build(final int length) throws IOException {
+        for (int i = 0; i < 8; i++) {
+            code.write(ALOAD_1);
+            push(i);
+            code.write(IALOAD);
+            code.write(ISTORE);
+            code.write(R + i);
+        }
+        code.write(ALOAD_1);
+        push(Block.FLAGS);
+        code.write(IALOAD);
+        code.write(ISTORE);
+        code.write(NZP);
+        for (int i = 0; i < length; i++)
+            if (instruction(start + i & 0xFFFF, i, length))
+                return classFile();
+        exit(start + length & 0xFFFF, length);
+        return classFile();
+    }
+
+    /**
+     * Generates the code of one instruction.
+     * 
+     * @param pc
+     *            the address of the instruction
+     * @param count
+     *            the number of instructions in the block before this one
+     * @param length
+     *            the number of instructions in the block
+     * @return whether the instruction ended the block
+     */
+    private boolean instruction(final int pc, final int count, final int length) {
+        final int inst = m.getMemory((short) pc) & 0xFFFF;
+        final int dr = inst >> 9 & 7, sr = inst >> 6 & 7, next = pc + 1 & 0xFFFF;
+        final int pgaddr = next & 0xFE00 | inst & 0x1FF;
+        switch (inst >> 12) {
+        case BRx:
+            // tested even for BRnzp, since the flags can be 0 after a reset or restore
+            load(NZP);
+            push(dr);
+            code.write(IAND);
+            final int branch = jump(IFEQ);
+            exit(pgaddr, count + 1);
+            target(branch);
+            exit(next, count + 1);
+            return true;
+        case ADD:
+        case AND:
+            load(R + sr);
+            if ((inst & 0x20) == 0)
+                load(R + (inst & 7));
+            else
+                push(inst << 27 >> 27);
+            code.write(inst >> 12 == ADD ? IADD : IAND);
+            code.write(I2S);
+            result(dr);
+            break;
+        case NOT:
+            load(R + sr);
+            code.write(ICONST_M1);
+            code.write(IXOR);
+            result(dr);
+            break;
+        case LD:
+            code.write(ALOAD_2);
+            push((short) pgaddr);
+            getMemory();
+            result(dr);
+            break;
+        case LDI:
+            code.write(ALOAD_2);
+            code.write(ALOAD_2);
+            push((short) pgaddr);
+            getMemory();
+            getMemory();
+            result(dr);
+            break;
+        case LDR:
+            code.write(ALOAD_2);
+            offset(sr, inst & 0x3F);
+            getMemory();
+            result(dr);
+            break;
+        case LEA:
+            push((short) pgaddr);
+            result(dr);
+            break;
+        case ST:
+            code.write(ALOAD_2);
+            push((short) pgaddr);
+            load(R + dr);
+            setMemory();
+            if ((pgaddr - start & 0xFFFF) < length)
+                checkStale(next, count + 1);
+            break;
+        case STI:
+            code.write(ALOAD_2);
+            code.write(ALOAD_2);
+            push((short) pgaddr);
+            getMemory();
+            load(R + dr);
+            setMemory();
+            checkStale(next, count + 1);
+            break;
+        case STR:
+            code.write(ALOAD_2);
+            offset(sr, inst & 0x3F);
+            load(R + dr);
+            setMemory();
+            checkStale(next, count + 1);
+            break;
+        case JSR:
+            if ((inst & 0x800) != 0)
+                link(next);
+            exit(pgaddr, count + 1);
+            return true;
+        case JSRR:
+            if ((inst & 0x800) != 0)
+                link(next);
+            exit(-1, count + 1);
+            code.write(ALOAD_1);
+            push(Block.PC);
+            offset(sr, inst & 0x3F);
+            code.write(I2C);
+            code.write(IASTORE);
+            push(count + 1);
+            code.write(IRETURN);
+            return true;
+        case RET:
+            exit(-1, count + 1);
+            code.write(ALOAD_1);
+            push(Block.PC);
+            load(R + 7);
+            code.write(I2C);
+            code.write(IASTORE);
+            push(count + 1);
+            code.write(IRETURN);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Generates code to store the value on the stack into a register and set the flags
+     * from it.
+     */
+    private void result(final int dr) {
+        code.write(DUP);
+        code.write(ISTORE);
+        code.write(R + dr);
+        invoke(INVOKESTATIC, BLOCK, "flags", "(I)I");
+        code.write(ISTORE);
+        code.write(NZP);
+    }
+
+    /**
+     * Generates code to push a register plus an offset, as a 16-bit address.
+     */
+    private void offset(final int sr, final int offset) {
+        load(R + sr);
+        push(offset);
+        code.write(IADD);
+        code.write(I2S);
+    }
+
+    /**
+     * Generates code to set R7 to the return address.
+     */
+    private void link(final int next) {
+        push((short) next);
+        code.write(ISTORE);
+        code.write(R + 7);
+    }
+
+    /**
+     * Generates code which returns early if the block has been overwritten.
+     */
+    private void checkStale(final int next, final int count) {
+        code.write(ALOAD_0);
+        code.write(GETFIELD);
+        write2(ref(9, BLOCK, "stale", "Z"));
+        final int branch = jump(IFEQ);
+        exit(next, count);
+        target(branch);
+    }
+
+    /**
+     * Generates code which copies the registers and flags back into the state array,
+     * stores the new PC and returns the number of instructions executed.
+     * 
+     * @param pc
+     *            the new PC, or -1 to leave the caller to store the PC and return
+     * @param count
+     *            the number of instructions executed
+     */
+    private void exit(final int pc, final int count) {
+        for (int i = 0; i < 8; i++) {
+            code.write(ALOAD_1);
+            push(i);
+            load(R + i);
+            code.write(IASTORE);
+        }
+        code.write(ALOAD_1);
+        push(Block.FLAGS);
+        load(NZP);
+        code.write(IASTORE);
+        if (pc == -1)
+            return;
+        code.write(ALOAD_1);
+        push(Block.PC);
+        push(pc);
+        code.write(IASTORE);
+        push(count);
+        code.write(IRETURN);
+    }
+
+    private void load(final int local) {
+        code.write(ILOAD);
+        code.write(local);
+    }
+
+    private void push(final int value) {
+        if (value >= -128 && value < 128) {
+            code.write(BIPUSH);
+            code.write(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            code.write(SIPUSH);
+            write2(value);
+        } else {
+            code.write(LDC_W);
+            write2(constant("I" + value, 3, value));
+        }
+    }
+
+    private void getMemory() {
+        invoke(INVOKEVIRTUAL, MACHINE, "getMemory", "(S)S");
+    }
+
+    private void setMemory() {
+        invoke(INVOKEVIRTUAL, MACHINE, "setMemory", "(SS)V");
+    }
+
+    private void invoke(final int op, final String owner, final String method,
+        final String desc) {
+        code.write(op);
+        write2(ref(10, owner, method, desc));
+    }
+
+    /**
+     * Generates a forward jump.
+     * 
+     * @return the offset of the jump, to be passed to {@link #target(int)}
+     */
+    private int jump(final int op) {
+        final int at = code.size();
+        code.write(op);
+        write2(0);
+        return at;
+    }
+
+    /**
+     * Points a forward jump at the current offset.
+     */
+    private void target(final int branch) {
+        final byte[] b = code.toByteArray();
+        final int delta = b.length - branch;
+        b[branch + 1] = (byte) (delta >> 8);
+        b[branch + 2] = (byte) delta;
+        code.reset();
+        code.write(b, 0, b.length);
+        frames.add(b.length);
+    }
+
+    private void write2(final int value) {
+        code.write(value >> 8);
+        code.write(value);
+    }
+
+    /**
+     * Adds an entry to the constant pool, unless an equal one is already there.
+     * 
+     * @param key
+     *            identifies the entry
+     * @param tag
+     *            the type of entry
+     * @param values
+     *            the contents of the entry: strings for UTF-8 entries, and integers
+     *            otherwise, which are written as 4 bytes for an integer constant and as
+     *            2-byte indices for anything else
+     * @return the index of the entry
+     */
+    private int constant(final String key, final int tag, final Object... values) {
+        final Integer index = indices.get(key);
+        if (index != null)
+            return index;
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(tag);
+            for (final Object v : values)
+                if (v instanceof String)
+                    out.writeUTF((String) v);
+                else if (tag == 3)
+                    out.writeInt((Integer) v);
+                else
+                    out.writeShort((Integer) v);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        pool.add(bytes.toByteArray());
+        indices.put(key, pool.size());
+        return pool.size();
+    }
+
+    private int utf8(final String s) {
+        return constant("U" + s, 1, s);
+    }
+
+    private int type(final String s) {
+        return constant("C" + s, 7, utf8(s));
+    }
+
+    /**
+     * Adds a field (tag 9) or method (tag 10) reference to the constant pool.
+     */
+    private int ref(final int tag, final String owner, final String member,
+        final String desc) {
+        final int nat = constant("N" + member + desc, 12, utf8(member), utf8(desc));
+        return constant("R" + owner + "." + member + desc, tag, type(owner), nat);
+    }
+
+    private byte[] classFile() throws IOException {
+        final int thisClass = type(name), superClass = type(BLOCK);
+        final int init = ref(10, BLOCK, "<init>", "()V");
+        final int initName = utf8("<init>"), initDesc = utf8("()V");
+        final int codeAttr = utf8("Code");
+
+        final ByteArrayOutputStream run = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(run);
+        out.writeShort(0x0001); // public
+        out.writeShort(utf8("run"));
+        out.writeShort(utf8("([I" + "L" + MACHINE + ";)I"));
+        out.writeShort(1);
+        final byte[] body = code.toByteArray();
+        final ByteArrayOutputStream stackMap = new ByteArrayOutputStream();
+        if (frames.size() != 0) {
+            final ByteArrayOutputStream entries = new ByteArrayOutputStream();
+            final DataOutputStream map = new DataOutputStream(entries);
+            int last = -1;
+            for (final int offset : frames) {
+                map.writeByte(255); // full frame
+                map.writeShort(offset - last - 1);
+                last = offset;
+                map.writeShort(LOCALS);
+                for (final int c : new int[] { thisClass, type("[I"), type(MACHINE) }) {
+                    map.writeByte(7); // object
+                    map.writeShort(c);
+                }
+                for (int i = 3; i < LOCALS; i++)
+                    map.writeByte(1); // int
+                map.writeShort(0);
+            }
+            final DataOutputStream attr = new DataOutputStream(stackMap);
+            attr.writeShort(utf8("StackMapTable"));
+            attr.writeInt(2 + entries.size());
+            attr.writeShort(frames.size());
+            entries.writeTo(attr);
+        }
+        out.writeShort(codeAttr);
+        out.writeInt(12 + body.length + stackMap.size());
+        out.writeShort(4); // max stack
+        out.writeShort(LOCALS);
+        out.writeInt(body.length);
+        out.write(body);
+        out.writeShort(0); // exception table
+        out.writeShort(frames.size() != 0 ? 1 : 0);
+        stackMap.writeTo(out);
+
+        final ByteArrayOutputStream file = new ByteArrayOutputStream();
+        final DataOutputStream f = new DataOutputStream(file);
+        f.writeInt(0xCAFEBABE);
+        f.writeShort(0);
+        f.writeShort(50); // Java 6
+        f.writeShort(pool.size() + 1);
+        for (final byte[] c : pool)
+            f.write(c);
+        f.writeShort(0x0031); // public final super
+        f.writeShort(thisClass);
+        f.writeShort(superClass);
+        f.writeShort(0); // interfaces
+        f.writeShort(0); // fields
+        f.writeShort(2); // methods
+        f.writeShort(0x0001); // public <init>
+        f.writeShort(initName);
+        f.writeShort(initDesc);
+        f.writeShort(1);
+        f.writeShort(codeAttr);
+        f.writeInt(17);
+        f.writeShort(1);
+        f.writeShort(1);
+        f.writeInt(5);
+        f.writeByte(ALOAD_0);
+        f.writeByte(INVOKESPECIAL);
+        f.writeShort(init);
+        f.writeByte(RETURN);
+        f.writeShort(0);
+        f.writeShort(0);
+        run.writeTo(file);
+        f.writeShort(0); // class attributes
+        return file.toByteArray();
+    }
+}
@@ -0,0 +1,176 @@
+package edu.osu.cse.mmxi.sim.machine.interpreter;
+
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.ADD;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.AND;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.BRx;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.DBUG;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.JSR;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.JSRR;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.LD;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.LDI;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.LDR;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.LEA;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.NOT;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.RET;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.ST;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.STI;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.STR;
+import static edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser.TRAP;
+
+import edu.osu.cse.mmxi.sim.machine.Machine;
+import edu.osu.cse.mmxi.sim.machine.interpreter.instructions.Instruction;
+
+/**
+ * <p>
+ * An ALU which executes runs of instructions in a single switch loop over primitive
+ * machine state, instead of decoding each word into an {@link Instruction} object and
+ * going through the Machine's {@code Register} objects.
+ * </p>
+ * 
+ * <p>
+ * At the start of {@link #execute(int)}, the registers, PC and flags are copied out of
+ * the Machine into a {@code short[]} and {@code int} fields; at the end, they are copied
+ * back. Memory is still accessed through the Machine, so stores invalidate decoded
+ * instructions as usual. {@code TRAP} and {@code DBUG} instructions, which need to see
+ * the Machine itself, copy the state back, run the ordinary {@code Instruction}, and copy
+ * the state in again. The results are bit-for-bit those of the {@link Interpreter},
+ * including the condition codes and the clock count.
+ * </p>
+ * 
+ * <p>
+ * Single steps (as used by the Console and trace mode) are executed by the ordinary
+ * Interpreter path, which this class inherits.
+ * </p>
+ */
+public class FastInterpreter extends Interpreter {
+    /**
+     * The general purpose registers, while inside {@link #execute(int)}.
+     */
+    private final short[] r;
+
+    /**
+     * The unsigned PC, while inside {@link #execute(int)}.
+     */
+    private int           pc;
+
+    /**
+     * The flags register value (4 = n, 2 = z, 1 = p), while inside {@link #execute(int)}.
+     */
+    private int           nzp;
+
+    public FastInterpreter(final Machine _m) {
+        super(_m);
+        r = new short[8];
+    }
+
+    @Override
+    public int execute(final int steps) {
+        if (m.hasHalted())
+            return 0;
+        load();
+        int n = 0, synced = 0;
+        loop: while (n < steps) {
+            final int inst = m.getMemory((short) pc) & 0xFFFF;
+            final int dr = inst >> 9 & 7, sr = inst >> 6 & 7;
+            final int pgaddr = pc + 1 & 0xFE00 | inst & 0x1FF;
+            pc = pc + 1 & 0xFFFF;
+            n++;
+            switch (inst >> 12) {
+            case BRx:
+                if ((dr & nzp) != 0)
+                    pc = pgaddr;
+                break;
+            case ADD:
+                if ((inst & 0x20) == 0)
+                    setFlags(r[dr] = (short) (r[sr] + r[inst & 7]));
+                else
+                    setFlags(r[dr] = (short) (r[sr] + (inst << 27 >> 27)));
+                break;
+            case LD:
+                setFlags(r[dr] = m.getMemory((short) pgaddr));
+                break;
+            case ST:
+                m.setMemory((short) pgaddr, r[dr]);
+                break;
+            case JSR:
+                if ((inst & 0x800) != 0)
+                    r[7] = (short) pc;
+                pc = pgaddr;
+                break;
+            case AND:
+                if ((inst & 0x20) == 0)
+                    setFlags(r[dr] = (short) (r[sr] & r[inst & 7]));
+                else
+                    setFlags(r[dr] = (short) (r[sr] & inst << 27 >> 27));
+                break;
+            case LDR:
+                setFlags(r[dr] = m.getMemory((short) (r[sr] + (inst & 0x3F))));
+                break;
+            case STR:
+                m.setMemory((short) (r[sr] + (inst & 0x3F)), r[dr]);
+                break;
+            case NOT:
+                setFlags(r[dr] = (short) ~r[sr]);
+                break;
+            case LDI:
+                setFlags(r[dr] = m.getMemory(m.getMemory((short) pgaddr)));
+                break;
+            case STI:
+                m.setMemory(m.getMemory((short) pgaddr), r[dr]);
+                break;
+            case JSRR:
+                if ((inst & 0x800) != 0)
+                    r[7] = (short) pc;
+                pc = r[sr] + (inst & 0x3F) & 0xFFFF;
+                break;
+            case RET:
+                pc = r[7] & 0xFFFF;
+                break;
+            case LEA:
+                setFlags(r[dr] = (short) pgaddr);
+                break;
+            case DBUG:
+            case TRAP:
+                m.advanceClock(n - synced);
+                synced = n;
+                store();
+                InstructionParser.parseInstruction((short) inst).execute(m);
+                load();
+                if (m.hasHalted())
+                    break loop;
+            }
+        }
+        m.advanceClock(n - synced);
+        store();
+        return n;
+    }
+
+    @Override
+    public ALU fork(final Machine _m) {
+        return new FastInterpreter(_m);
+    }
+
+    private void setFlags(final short s) {
+        nzp = s < 0 ? 4 : s == 0 ? 2 : 1;
+    }
+
+    /**
+     * Copies the Machine's registers, PC and flags into the primitive state.
+     */
+    private void load() {
+        for (int i = 0; i < 8; i++)
+            r[i] = m.getRegister(i).getValue();
+        pc = m.getPCRegister().getValue() & 0xFFFF;
+        nzp = m.getFlags().getValue();
+    }
+
+    /**
+     * Copies the primitive state back into the Machine's registers, PC and flags.
+     */
+    private void store() {
+        for (int i = 0; i < 8; i++)
+            m.getRegister(i).setValue(r[i]);
+        m.getPCRegister().setValue((short) pc);
+        m.getFlags().setValue((short) nzp);
+    }
+}
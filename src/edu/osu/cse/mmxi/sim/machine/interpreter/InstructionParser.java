@@ -127,7 +127,33 @@ public class InstructionParser {
         LD = 2, LDI = 10, LDR = 6, LEA = 14, NOT = 9, RET = 13, ST = 3, STI = 11,
         STR = 7, TRAP = 15;
 
+    /**
+     * The table of decoded instructions, indexed by the unsigned value of the instruction
+     * word. Since every instruction is exactly one word and decoding is a pure function of
+     * that word, each of the 65,536 possible words has exactly one (immutable)
+     * {@link Instruction}, which is built the first time the word is parsed and shared from
+     * then on. Two threads racing to fill the same entry will simply build equivalent
+     * objects; the {@code final} fields of {@link Instruction} make either one safe to
+     * publish this way.
+     */
+    private static final Instruction[] TABLE = new Instruction[0x10000];
+
+    /**
+     * Returns the shared {@link Instruction} for a 16-bit word, decoding it if this is the
+     * first time the word has been seen.
+     * 
+     * @param inst
+     *            the instruction word
+     * @return the decoded instruction
+     */
     public static Instruction parseInstruction(final short inst) {
+        Instruction i = TABLE[inst & 0xFFFF];
+        if (i == null)
+            i = TABLE[inst & 0xFFFF] = decode(inst);
+        return i;
+    }
+
+    private static Instruction decode(final short inst) {
         switch (getBits(inst, 12, 4)) {
         case BRx:
             return new Instruction.BRx(getBits(inst, 9, 3), getBits(inst, 0, 9));
@@ -1,23 +1,102 @@
 package edu.osu.cse.mmxi.sim.machine.interpreter;
 
+import java.util.Arrays;
 import java.util.Map;
 
 import edu.osu.cse.mmxi.sim.machine.Machine;
 import edu.osu.cse.mmxi.sim.machine.interpreter.instructions.Instruction;
+import edu.osu.cse.mmxi.sim.machine.interpreter.instructions.Superinstruction;
 
+/**
+ * The Interpreter executes instructions one at a time by decoding the word at the PC into
+ * an {@link Instruction} and executing it on the Machine.
+ * 
+ * Decoded instructions are kept in a predecoded cache indexed by their absolute address,
+ * so that a word which is executed repeatedly (as in a loop) is only decoded once. The
+ * Machine is responsible for calling {@link #invalidate(short)} whenever a word of memory
+ * is written, which discards the cached decoding of that word. Like memory, the cache is
+ * divided into pages, which are only allocated once an instruction on them is executed.
+ * 
+ * When {@link #execute(int)} runs more than one instruction, adjacent pairs of words
+ * which form a common idiom are fused into a {@link Superinstruction}, kept in a second
+ * cache indexed by the address of the first word, and executed with one dispatch. The
+ * clock still advances by one for each instruction. Single steps (as used by the Console,
+ * which checks breakpoints between instructions) never execute superinstructions.
+ */
 public class Interpreter implements ALU {
-    public Machine m;
+    public Machine                m;
+
+    /**
+     * The predecoded instruction cache, indexed by the page and page offset of the
+     * instruction. A {@code null} page means that nothing on it has been decoded, and a
+     * {@code null} entry means the word has not been decoded since it was last written.
+     */
+    private final Instruction[][] cache;
+
+    /**
+     * The superinstruction cache, laid out like the predecoded cache. An entry is
+     * {@link #UNFUSED} if the word and the one after it do not form an idiom.
+     */
+    private final Instruction[][] fused;
+
+    private static final Instruction UNFUSED = new Unfused();
 
     public Interpreter(final Machine _m) {
         m = _m;
+        cache = new Instruction[0x80][];
+        fused = new Instruction[0x80][];
     }
 
     @Override
     public void executeNextInstruction(final short s) {
-        final Instruction i = InstructionParser.parseInstruction(m.getMemory(s));
+        Instruction[] page = cache[s >> 9 & 0x7F];
+        if (page == null)
+            page = cache[s >> 9 & 0x7F] = new Instruction[0x200];
+        Instruction i = page[s & 0x1FF];
+        if (i == null)
+            i = page[s & 0x1FF] = InstructionParser.parseInstruction(m.getMemory(s));
         i.execute(m);
     }
 
+    @Override
+    public int execute(final int steps) {
+        int i = 0;
+        while (i < steps && !m.hasHalted()) {
+            if (steps - i >= 2) {
+                final Instruction f = fusedAt(m.getPCRegister().getValue());
+                if (f != UNFUSED) {
+                    m.advanceClock(2);
+                    f.execute(m);
+                    i += 2;
+                    continue;
+                }
+            }
+            m.stepClock();
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Finds the superinstruction starting at an address, fusing it if the pair has not
+     * been decoded since either word was last written. Pairs which cross a page boundary
+     * are never fused.
+     * 
+     * @return the superinstruction, or {@link #UNFUSED}
+     */
+    private Instruction fusedAt(final short s) {
+        Instruction[] page = fused[s >> 9 & 0x7F];
+        if (page == null)
+            page = fused[s >> 9 & 0x7F] = new Instruction[0x200];
+        Instruction i = page[s & 0x1FF];
+        if (i == null) {
+            i = (s & 0x1FF) == 0x1FF ? null : Superinstruction.fuse(m.getMemory(s), m
+                .getMemory((short) (s + 1)));
+            i = page[s & 0x1FF] = i != null ? i : UNFUSED;
+        }
+        return i;
+    }
+
     @Override
     public String readInstruction(final short inst) {
         final Instruction i = InstructionParser.parseInstruction(inst);
@@ -35,4 +114,44 @@ public class Interpreter implements ALU {
         final Instruction i = InstructionParser.parseInstruction(inst);
         return i.toString(context, symb);
     }
+
+    @Override
+    public void invalidate(final short address) {
+        final Instruction[] page = cache[address >> 9 & 0x7F];
+        if (page != null)
+            page[address & 0x1FF] = null;
+        final Instruction[] pair = fused[address >> 9 & 0x7F];
+        if (pair != null) {
+            pair[address & 0x1FF] = null;
+            if ((address & 0x1FF) != 0)
+                pair[address - 1 & 0x1FF] = null;
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        Arrays.fill(cache, null);
+        Arrays.fill(fused, null);
+    }
+
+    @Override
+    public ALU fork(final Machine _m) {
+        return new Interpreter(_m);
+    }
+
+    /**
+     * The marker in the superinstruction cache for a pair of words which do not form an
+     * idiom. It is only compared against, and is never executed.
+     */
+    private static final class Unfused extends Instruction {
+        @Override
+        public boolean execute(final Machine _m) {
+            throw new IllegalStateException("not a superinstruction");
+        }
+
+        @Override
+        public String toString(final Machine context, final Map<String, Short> symb) {
+            return "(not fused)";
+        }
+    }
 }
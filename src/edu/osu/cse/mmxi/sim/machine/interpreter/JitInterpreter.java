@@ -0,0 +1,186 @@
+package edu.osu.cse.mmxi.sim.machine.interpreter;
+
+import java.util.Arrays;
+
+import edu.osu.cse.mmxi.sim.machine.Machine;
+
+/**
+ * <p>
+ * An ALU which compiles hot basic blocks to JVM bytecode, so that loops run as compiled
+ * Java code instead of being interpreted an instruction at a time.
+ * </p>
+ * 
+ * <p>
+ * Each time {@link #execute(int)} reaches the start of a block, it looks for a compiled
+ * version of it, cached by its start address. A block which has not been compiled is
+ * executed by the {@link FastInterpreter} until it has been reached {@link #HOT} times,
+ * after which it is compiled by the {@link BlockCompiler}. {@code TRAP} and {@code DBUG}
+ * instructions are never compiled, and are always executed by the FastInterpreter, as
+ * are the last few instructions before the step limit when a whole block no longer
+ * fits. The results are bit-for-bit those of the {@link Interpreter}, including the
+ * condition codes and the clock count.
+ * </p>
+ * 
+ * <p>
+ * When a word of memory is written, every compiled block containing it is discarded;
+ * if the block is running at the time, it stops after the store and the rest of it is
+ * executed from the new code. A bitmap of the words covered by compiled blocks keeps
+ * the check cheap for stores to data.
+ * </p>
+ */
+public class JitInterpreter extends FastInterpreter {
+    /**
+     * The number of times a block is reached before it is compiled.
+     */
+    public static final int HOT = 8;
+
+    /**
+     * The registers, PC and flags, while inside {@link #execute(int)}, laid out as for
+     * {@link Block#run(int[], Machine)}.
+     */
+    private final int[]     state;
+
+    /**
+     * The compiled blocks, indexed by the page and page offset of their first
+     * instruction. Like the Interpreter's cache, pages are only allocated when needed.
+     */
+    private final Block[][] blocks;
+
+    /**
+     * The number of times each block has been reached without being compiled.
+     */
+    private final byte[][]  heat;
+
+    /**
+     * A bit for every word which is part of a compiled block (or was, until the block was
+     * discarded).
+     */
+    private final long[]    covered;
+
+    public JitInterpreter(final Machine _m) {
+        super(_m);
+        state = new int[10];
+        blocks = new Block[0x80][];
+        heat = new byte[0x80][];
+        covered = new long[0x400];
+    }
+
+    @Override
+    public int execute(final int steps) {
+        if (m.hasHalted())
+            return 0;
+        load();
+        int n = 0, synced = 0;
+        while (n < steps) {
+            final int pc = state[Block.PC];
+            Block b = lookup(pc);
+            if (b == null && warm(pc))
+                b = compile(pc);
+            if (b != null && b.length <= steps - n) {
+                n += b.run(state, m);
+                continue;
+            }
+            final int length = b != null ? b.length : BlockCompiler.length(m, pc);
+            m.advanceClock(n - synced);
+            store();
+            n += super.execute(Math.max(1, Math.min(length, steps - n)));
+            synced = n;
+            load();
+            if (m.hasHalted())
+                break;
+        }
+        m.advanceClock(n - synced);
+        store();
+        return n;
+    }
+
+    @Override
+    public void invalidate(final short address) {
+        super.invalidate(address);
+        final int a = address & 0xFFFF;
+        if ((covered[a >> 6] & 1L << a) == 0)
+            return;
+        for (int i = 0; i < BlockCompiler.MAX_LENGTH; i++) {
+            final int start = a - i & 0xFFFF;
+            final Block[] page = blocks[start >> 9];
+            if (page != null && page[start & 0x1FF] != null
+                && page[start & 0x1FF].length > i) {
+                page[start & 0x1FF].stale = true;
+                page[start & 0x1FF] = null;
+            }
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        super.invalidateAll();
+        Arrays.fill(blocks, null);
+        Arrays.fill(heat, null);
+        Arrays.fill(covered, 0);
+    }
+
+    @Override
+    public ALU fork(final Machine _m) {
+        return new JitInterpreter(_m);
+    }
+
+    private Block lookup(final int pc) {
+        final Block[] page = blocks[pc >> 9];
+        return page == null ? null : page[pc & 0x1FF];
+    }
+
+    /**
+     * Counts another visit to a block which has not been compiled.
+     * 
+     * @return whether the block is now hot enough to compile
+     */
+    private boolean warm(final int pc) {
+        byte[] page = heat[pc >> 9];
+        if (page == null)
+            page = heat[pc >> 9] = new byte[0x200];
+        if (page[pc & 0x1FF] >= HOT)
+            return true;
+        page[pc & 0x1FF]++;
+        return false;
+    }
+
+    /**
+     * Compiles a block and adds it to the cache.
+     * 
+     * @return the block, or {@code null} if it is empty
+     */
+    private Block compile(final int pc) {
+        final Block b = BlockCompiler.compile(m, pc);
+        if (b == null)
+            return null;
+        Block[] page = blocks[pc >> 9];
+        if (page == null)
+            page = blocks[pc >> 9] = new Block[0x200];
+        page[pc & 0x1FF] = b;
+        for (int i = 0; i < b.length; i++) {
+            final int a = pc + i & 0xFFFF;
+            covered[a >> 6] |= 1L << a;
+        }
+        return b;
+    }
+
+    /**
+     * Copies the Machine's registers, PC and flags into the state array.
+     */
+    private void load() {
+        for (int i = 0; i < 8; i++)
+            state[i] = m.getRegister(i).getValue();
+        state[Block.PC] = m.getPCRegister().getValue() & 0xFFFF;
+        state[Block.FLAGS] = m.getFlags().getValue();
+    }
+
+    /**
+     * Copies the state array back into the Machine's registers, PC and flags.
+     */
+    private void store() {
+        for (int i = 0; i < 8; i++)
+            m.getRegister(i).setValue((short) state[i]);
+        m.getPCRegister().setValue((short) state[Block.PC]);
+        m.getFlags().setValue((short) state[Block.FLAGS]);
+    }
+}
@@ -242,8 +242,7 @@ public abstract class Instruction {
 
         @Override
         public boolean execute(final Machine m) {
-            if ((nzp & 4) != 0 && m.getFlags().getN() || (nzp & 2) != 0
-                && m.getFlags().getZ() || (nzp & 1) != 0 && m.getFlags().getP())
+            if ((nzp & m.getFlags().getValue()) != 0)
                 m.getPCRegister().setValue(
                     (short) ((m.getPCRegister().getValue() & 0xfe00) + pgoff));
             return false;
@@ -668,14 +667,14 @@ public abstract class Instruction {
                         + Utilities.uShortToHex(m.getRegister(0).getValue());
                     m.ui.printErrors(new Error(msg, SimCodes.EXEC_TRAP_OUT));
                 }
-                m.ui.print("" + (char) (m.getRegister(0).getValue() & 0x7f));
+                m.ui.putChar((char) (m.getRegister(0).getValue() & 0x7f));
                 break;
             case PUTS: // write the null-terminated string pointed to by R0 to the
                 // console
                 short i = m.getRegister(0).getValue();
                 short s = m.getMemory(i++);
                 while (s != 0) {
-                    m.ui.print("" + (char) (s & 0x7f));
+                    m.ui.putChar((char) (s & 0x7f));
                     s = m.getMemory(i++);
                 }
                 break;
@@ -686,6 +685,7 @@ public abstract class Instruction {
                 break;
             case HALT: // halt execution
                 m.halt();
+                m.ui.flush();
                 break;
             case OUTN: // write the value of R0 to the console as a decimal integer
                 m.ui.print(m.getRegister(0).getValue() + "\n");
@@ -694,7 +694,7 @@ public abstract class Instruction {
                 m.getRegister(0).setValue(m.ui.getShort());
                 break; // prompt
             case RND: // store a random number in R0
-                m.getRegister(0).setValue(Utilities.randomShort());
+                m.getRegister(0).setValue(m.getRandom().nextShort());
                 break;
             default:
                 final List<Error> errors = new ArrayList<Error>();
@@ -0,0 +1,164 @@
+package edu.osu.cse.mmxi.sim.machine.interpreter.instructions;
+
+import java.util.Map;
+
+import edu.osu.cse.mmxi.sim.machine.Machine;
+import edu.osu.cse.mmxi.sim.machine.Register;
+import edu.osu.cse.mmxi.sim.machine.interpreter.InstructionParser;
+
+/**
+ * <p>
+ * A pair of adjacent instructions which occur together often enough to be worth executing
+ * as one, fused when the Interpreter decodes them. Unlike an ordinary Instruction, a
+ * superinstruction is executed with the PC still pointing at its first word, and leaves
+ * it after both instructions (or at the branch target), exactly as executing the two
+ * instructions one after the other would.
+ * </p>
+ * 
+ * <p>
+ * The idioms fused are:
+ * </p>
+ * <ul>
+ * <li>{@code AND Rx, Ry, #0} followed by {@code ADD Rx, Rx, #imm}, which loads a small
+ * constant ({@link LoadConstant});</li>
+ * <li>an {@code ADD} followed by a {@code BRx}, as at the bottom of a counted loop
+ * ({@link AddBranch});</li>
+ * <li>{@code LDR Rx, Ry, #i} followed by {@code STR Rx, Rz, #j}, which copies a word
+ * ({@link Copy}).</li>
+ * </ul>
+ */
+public abstract class Superinstruction extends Instruction {
+    /**
+     * The two instructions which were fused, for display.
+     */
+    private final Instruction first, second;
+
+    protected Superinstruction(final short _first, final short _second) {
+        first = InstructionParser.parseInstruction(_first);
+        second = InstructionParser.parseInstruction(_second);
+    }
+
+    /**
+     * Fuses two adjacent words, if they form one of the idioms.
+     * 
+     * @param a
+     *            the first word
+     * @param b
+     *            the word after it
+     * @return the superinstruction, or {@code null} if the words are not fused
+     */
+    public static Superinstruction fuse(final short a, final short b) {
+        final int opA = a >> 12 & 0xF, opB = b >> 12 & 0xF;
+        final int drA = a >> 9 & 7, drB = b >> 9 & 7, srB = b >> 6 & 7;
+        if (opA == InstructionParser.AND && (a & 0x3F) == 0x20
+            && opB == InstructionParser.ADD && (b & 0x20) != 0 && drB == drA
+            && srB == drA)
+            return new LoadConstant(a, b);
+        if (opA == InstructionParser.ADD && opB == InstructionParser.BRx)
+            return new AddBranch(a, b);
+        if (opA == InstructionParser.LDR && opB == InstructionParser.STR && drB == drA)
+            return new Copy(a, b);
+        return null;
+    }
+
+    /**
+     * Moves the PC past both words of the superinstruction.
+     * 
+     * @return the new PC
+     */
+    protected static short skip(final Machine m) {
+        final Register pc = m.getPCRegister();
+        pc.setValue((short) (pc.getValue() + 2));
+        return pc.getValue();
+    }
+
+    @Override
+    public String toString(final Machine context, final Map<String, Short> symb) {
+        return first.toString(context, symb) + "; " + second.toString(context, symb);
+    }
+
+    /**
+     * {@code AND Rx, Ry, #0} followed by {@code ADD Rx, Rx, #imm}: sets {@code Rx} to
+     * {@code imm} in one write.
+     */
+    public static class LoadConstant extends Superinstruction {
+        private final byte  dr;
+        private final short imm;
+
+        public LoadConstant(final short a, final short b) {
+            super(a, b);
+            dr = (byte) (a >> 9 & 7);
+            imm = (short) (b << 27 >> 27);
+        }
+
+        @Override
+        public boolean execute(final Machine m) {
+            skip(m);
+            m.getRegister(dr).setValue(imm);
+            m.getFlags().setFlags(imm);
+            return true;
+        }
+    }
+
+    /**
+     * An {@code ADD} (of either mode) followed by a {@code BRx}: the branch is decided
+     * from the sum directly, instead of from the flags register.
+     */
+    public static class AddBranch extends Superinstruction {
+        private final byte    dr, sr1, sr2, nzp;
+        private final short   imm, pgoff;
+        private final boolean immediate;
+
+        public AddBranch(final short a, final short b) {
+            super(a, b);
+            dr = (byte) (a >> 9 & 7);
+            sr1 = (byte) (a >> 6 & 7);
+            sr2 = (byte) (a & 7);
+            immediate = (a & 0x20) != 0;
+            imm = (short) (a << 27 >> 27);
+            nzp = (byte) (b >> 9 & 7);
+            pgoff = (short) (b & 0x1FF);
+        }
+
+        @Override
+        public boolean execute(final Machine m) {
+            final short pc = skip(m);
+            final short addend = immediate ? imm : m.getRegister(sr2).getValue();
+            final short sum = (short) (m.getRegister(sr1).getValue() + addend);
+            m.getRegister(dr).setValue(sum);
+            m.getFlags().setFlags(sum);
+            if ((nzp & (sum < 0 ? 4 : sum == 0 ? 2 : 1)) != 0)
+                m.getPCRegister().setValue((short) ((pc & 0xfe00) + pgoff));
+            return true;
+        }
+    }
+
+    /**
+     * {@code LDR Rx, Ry, #i} followed by {@code STR Rx, Rz, #j}: copies a word through
+     * {@code Rx}.
+     */
+    public static class Copy extends Superinstruction {
+        private final byte dr, src, dest;
+        private final byte from, to;
+
+        public Copy(final short a, final short b) {
+            super(a, b);
+            dr = (byte) (a >> 9 & 7);
+            src = (byte) (a >> 6 & 7);
+            from = (byte) (a & 0x3F);
+            dest = (byte) (b >> 6 & 7);
+            to = (byte) (b & 0x3F);
+        }
+
+        @Override
+        public boolean execute(final Machine m) {
+            skip(m);
+            final short value = m
+                .getMemory((short) (m.getRegister(src).getValue() + from));
+            m.getRegister(dr).setValue(value);
+            m.getFlags().setFlags(value);
+            m.setMemory((short) (m.getRegister(dest).getValue() + to), value);
+            return true;
+        }
+    }
+}
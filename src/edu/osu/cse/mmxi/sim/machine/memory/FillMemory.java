@@ -1,5 +1,7 @@
 package edu.osu.cse.mmxi.sim.machine.memory;
 
+import edu.osu.cse.mmxi.common.XorShift;
+
 /**
  * An implementation of physical memory where all words in all pages are initialized to a
  * particular <i>fill</i> value.
@@ -41,4 +43,9 @@ public class FillMemory extends PagedMemory {
         }
         return memory[page];
     }
+
+    @Override
+    protected PagedMemory newInstance(final XorShift random) {
+        return new FillMemory(memory.length, fill);
+    }
 }
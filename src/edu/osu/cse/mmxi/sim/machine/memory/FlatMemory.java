@@ -0,0 +1,171 @@
+package edu.osu.cse.mmxi.sim.machine.memory;
+
+import java.util.BitSet;
+
+import edu.osu.cse.mmxi.common.XorShift;
+
+/**
+ * <p>
+ * A representation of random access memory stored as a single {@code short[]} of 65536
+ * words, indexed directly by the unsigned absolute address. Unlike {@link PagedMemory},
+ * an access is a single array index with no page lookup or lazy initialization, at the
+ * cost of allocating and initializing all of memory up front.
+ * </p>
+ * 
+ * <p>
+ * Dirty, accessed and changed bits are kept for each 512-word page, as in
+ * {@link PagedMemory}.
+ * </p>
+ * 
+ * <p>
+ * A memory address is given by a 16-bit quantity where the upper 7 bits denote the page
+ * number and the lower 9 bits denote the offset within that page.
+ * </p>
+ */
+public class FlatMemory implements Memory {
+
+    /**
+     * The words of memory, indexed by unsigned absolute address.
+     */
+    private final short[]    memory;
+
+    /**
+     * The pages which have been written to, the pages which have been read from or
+     * written to, and the pages written to since {@link #takeChangedPages()}.
+     */
+    private final PageBitmap dirty    = new PageBitmap(0x80);
+    private final PageBitmap accessed = new PageBitmap(0x80);
+    private final PageBitmap changed  = new PageBitmap(0x80);
+
+    /**
+     * Creates a {@code FlatMemory} object where every word is initialized to a random
+     * 16-bit value, as in {@link RandomizedMemory}.
+     * 
+     * @param random
+     *            the random number generator used to fill memory
+     */
+    public FlatMemory(final XorShift random) {
+        memory = new short[0x10000];
+        for (int i = 0; i < memory.length; i++)
+            memory[i] = random.nextShort();
+    }
+
+    /**
+     * Creates a {@code FlatMemory} object where every word is initialized to a particular
+     * fill value, as in {@link FillMemory}.
+     * 
+     * @param fill
+     *            the initial value of every word
+     */
+    public FlatMemory(final short fill) {
+        memory = new short[0x10000];
+        if (fill != 0)
+            for (int i = 0; i < memory.length; i++)
+                memory[i] = fill;
+    }
+
+    /**
+     * Creates a {@code FlatMemory} object holding a copy of another one's words.
+     * 
+     * @param words
+     *            the words to copy
+     */
+    private FlatMemory(final short[] words) {
+        memory = words.clone();
+    }
+
+    @Override
+    public short getMemory(final short absoluteAddress) {
+        accessed.set((absoluteAddress & 0xFFFF) >> 9);
+        return memory[absoluteAddress & 0xFFFF];
+    }
+
+    @Override
+    public short getMemory(final byte page, final short pageOffset) {
+        accessed.set(page);
+        return memory[page << 9 | pageOffset];
+    }
+
+    @Override
+    public void getMemory(final short absoluteAddress, final short[] values,
+        final int offset, final int length) {
+        final int addr = absoluteAddress & 0xFFFF, n = Math.min(length, 0x10000 - addr);
+        mark(accessed, addr, length);
+        System.arraycopy(memory, addr, values, offset, n);
+        System.arraycopy(memory, 0, values, offset + n, length - n);
+    }
+
+    @Override
+    public void peekPage(final byte page, final short[] values) {
+        System.arraycopy(memory, page << 9, values, 0, 0x200);
+    }
+
+    @Override
+    public void setMemory(final short absoluteAddress, final short value) {
+        dirty.set((absoluteAddress & 0xFFFF) >> 9);
+        accessed.set((absoluteAddress & 0xFFFF) >> 9);
+        changed.set((absoluteAddress & 0xFFFF) >> 9);
+        memory[absoluteAddress & 0xFFFF] = value;
+    }
+
+    @Override
+    public void setMemory(final byte page, final short pageOffset, final short value) {
+        dirty.set(page);
+        accessed.set(page);
+        changed.set(page);
+        memory[page << 9 | pageOffset] = value;
+    }
+
+    @Override
+    public void setMemory(final short absoluteAddress, final short[] values,
+        final int offset, final int length) {
+        final int addr = absoluteAddress & 0xFFFF, n = Math.min(length, 0x10000 - addr);
+        mark(dirty, addr, length);
+        mark(accessed, addr, length);
+        mark(changed, addr, length);
+        System.arraycopy(values, offset, memory, addr, n);
+        System.arraycopy(values, offset + n, memory, 0, length - n);
+    }
+
+    /**
+     * Sets the bits of the pages holding a block of words.
+     */
+    private static void mark(final PageBitmap bits, final int addr, final int length) {
+        for (int a = addr; a < addr + length; a = (a | 0x1FF) + 1)
+            bits.set(a >> 9 & 0x7F);
+    }
+
+    @Override
+    public BitSet getDirtyPages() {
+        return dirty.toBitSet();
+    }
+
+    @Override
+    public BitSet getAccessedPages() {
+        return accessed.toBitSet();
+    }
+
+    @Override
+    public void clearDirtyPages() {
+        dirty.clear();
+    }
+
+    @Override
+    public void clearAccessedPages() {
+        accessed.clear();
+    }
+
+    @Override
+    public BitSet takeChangedPages() {
+        return changed.take();
+    }
+
+    /**
+     * Forks this memory. A {@code FlatMemory} has no pages to share, so all of memory is
+     * copied.
+     */
+    @Override
+    public Memory fork(final XorShift random) {
+        return new FlatMemory(memory);
+    }
+}
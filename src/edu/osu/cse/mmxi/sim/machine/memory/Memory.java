@@ -1,5 +1,9 @@
 package edu.osu.cse.mmxi.sim.machine.memory;
 
+import java.util.BitSet;
+
+import edu.osu.cse.mmxi.common.XorShift;
+
 /**
  * <p>
  * A representation of random access memory within a hardware computer system. Memory is
@@ -37,6 +41,33 @@ public interface Memory {
      */
     public abstract short getMemory(byte page, short pageOffset);
 
+    /**
+     * Copies a block of 16-bit words out of memory, starting at the absolute memory
+     * address. Addresses wrap around from xFFFF to x0000.
+     * 
+     * @param absoluteAddress
+     *            16-bit representation of the absolute memory address of the first word.
+     * @param values
+     *            the array to store the words in.
+     * @param offset
+     *            the index in {@code values} of the first word.
+     * @param length
+     *            the number of words to copy.
+     */
+    public abstract void getMemory(short absoluteAddress, short[] values, int offset,
+        int length);
+
+    /**
+     * Copies a whole page of memory without marking it as accessed, so that saving the
+     * state of memory does not change the accessed pages.
+     * 
+     * @param page
+     *            the page number
+     * @param values
+     *            the array of 512 words to store the page in
+     */
+    public abstract void peekPage(byte page, short[] values);
+
     /**
      * Sets the contents of the 16-bit word stored at the absolute memory address of the
      * current page to a 16-bit value.
@@ -64,4 +95,66 @@ public interface Memory {
      */
     public abstract void setMemory(byte page, short pageOffset, short value);
 
+    /**
+     * Copies a block of 16-bit words into memory, starting at the absolute memory
+     * address. Addresses wrap around from xFFFF to x0000.
+     * 
+     * @param absoluteAddress
+     *            16-bit representation of the absolute memory address of the first word.
+     * @param values
+     *            the array holding the words to store.
+     * @param offset
+     *            the index in {@code values} of the first word.
+     * @param length
+     *            the number of words to store.
+     */
+    public abstract void setMemory(short absoluteAddress, short[] values, int offset,
+        int length);
+
+    /**
+     * Creates a copy of this memory, holding the same words, which can then be changed
+     * independently of this one.
+     * 
+     * @param random
+     *            the random number generator the copy uses for any words it has to
+     *            make up (such as pages of a randomized memory not yet used)
+     * @return the copy
+     */
+    public abstract Memory fork(XorShift random);
+
+    /**
+     * Retrieves the pages which have been written to since the dirty pages were last
+     * cleared (or since the memory was created).
+     * 
+     * @return the set of page numbers
+     */
+    public abstract BitSet getDirtyPages();
+
+    /**
+     * Retrieves the pages which have been read from or written to since the accessed
+     * pages were last cleared (or since the memory was created).
+     * 
+     * @return the set of page numbers
+     */
+    public abstract BitSet getAccessedPages();
+
+    /**
+     * Marks every page as not written to.
+     */
+    public abstract void clearDirtyPages();
+
+    /**
+     * Marks every page as not accessed.
+     */
+    public abstract void clearAccessedPages();
+
+    /**
+     * Retrieves the pages which have been written to since the last call (or since the
+     * memory was created), and marks them as unchanged. These are kept apart from the
+     * dirty pages for a single consumer which must see every write, such as a
+     * checkpoint stream, so that clearing the dirty pages does not lose any.
+     * 
+     * @return the set of page numbers
+     */
+    public abstract BitSet takeChangedPages();
 }
@@ -0,0 +1,73 @@
+package edu.osu.cse.mmxi.sim.machine.memory;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A bitmap with one bit for each page of memory, used to keep track of which pages have
+ * been written to or accessed. Setting a bit is a test and (rarely) an OR on a
+ * {@code long[]}, so that it can be done on every memory access.
+ */
+public class PageBitmap {
+    private final long[] bits;
+
+    /**
+     * Creates a bitmap with every bit clear.
+     * 
+     * @param numPages
+     *            the number of pages in memory
+     */
+    public PageBitmap(final int numPages) {
+        bits = new long[numPages + 63 >> 6];
+    }
+
+    /**
+     * Sets the bit of a page. The bitmap is only written to if the bit was clear, since
+     * nearly every call finds it already set.
+     * 
+     * @param page
+     *            the page number
+     */
+    public void set(final int page) {
+        if ((bits[page >> 6] & 1L << page) == 0)
+            bits[page >> 6] |= 1L << page;
+    }
+
+    /**
+     * @param page
+     *            the page number
+     * @return whether the bit of the page is set
+     */
+    public boolean get(final int page) {
+        return (bits[page >> 6] & 1L << page) != 0;
+    }
+
+    /**
+     * Clears every bit.
+     */
+    public void clear() {
+        Arrays.fill(bits, 0);
+    }
+
+    /**
+     * Copies the bitmap and clears every bit.
+     * 
+     * @return the bitmap as it was, as a set of page numbers
+     */
+    public BitSet take() {
+        final BitSet set = toBitSet();
+        clear();
+        return set;
+    }
+
+    /**
+     * @return a copy of the bitmap, as a set of page numbers
+     */
+    public BitSet toBitSet() {
+        final BitSet set = new BitSet();
+        for (int i = 0; i < bits.length; i++)
+            for (long w = bits[i]; w != 0; w &= w - 1)
+                set.set(i << 6 | Long.numberOfTrailingZeros(w));
+        return set;
+    }
+}
@@ -1,5 +1,9 @@
 package edu.osu.cse.mmxi.sim.machine.memory;
 
+import java.util.BitSet;
+
+import edu.osu.cse.mmxi.common.XorShift;
+
 /**
  * <p>
  * A representation of random access memory within a hardware computer system. Memory is
@@ -12,6 +16,19 @@ package edu.osu.cse.mmxi.sim.machine.memory;
  * A memory address is given by a 16-bit quantity where the upper 7 bits denote the page
  * number and the lower 9 bits denote the offset within that page.
  * </p>
+ * 
+ * <p>
+ * A {@code PagedMemory} can be forked cheaply (see {@link #fork(XorShift)}): the fork
+ * shares its pages with the original, and a page is only copied when one of them first
+ * writes to it.
+ * </p>
+ * 
+ * <p>
+ * Each page has a dirty bit, set when the page is written to, and an accessed bit, set
+ * when it is read from or written to, so that changes to memory can be found without
+ * looking at every word. A second bit set on writes, the changed bit, is kept for
+ * {@link #takeChangedPages()}.
+ * </p>
  */
 public abstract class PagedMemory implements Memory {
 
@@ -19,14 +36,26 @@ public abstract class PagedMemory implements Memory {
      * The words of memory, stored as a double array with pages at the top level and page
      * offsets at the second level.
      */
-    protected short[][]     memory;
+    protected short[][]      memory;
+
+    /**
+     * Which pages are shared with another {@code PagedMemory}, and so must be copied
+     * before they are written.
+     */
+    private final boolean[]  shared;
+
+    /**
+     * The pages which have been written to, the pages which have been read from or
+     * written to, and the pages written to since {@link #takeChangedPages()}.
+     */
+    private final PageBitmap dirty, accessed, changed;
 
     /**
      * The default number of pages. The value of this variable, {@code 0x80}, cannot
      * easily be changed because the number of bits of the page encoding (7) is hard-coded
      * into the instruction format.
      */
-    public final static int DEFAULT_NUM_PAGES = 0x80;
+    public final static int  DEFAULT_NUM_PAGES = 0x80;
 
     /**
      * Creates a {@code PagedMemory} object with 128 pages. The memory itself is not
@@ -46,6 +75,10 @@ public abstract class PagedMemory implements Memory {
      */
     public PagedMemory(final int numPages) {
         memory = new short[numPages][];
+        shared = new boolean[numPages];
+        dirty = new PageBitmap(numPages);
+        accessed = new PageBitmap(numPages);
+        changed = new PageBitmap(numPages);
     }
 
     /**
@@ -76,9 +109,41 @@ public abstract class PagedMemory implements Memory {
      */
     @Override
     public short getMemory(final byte page, final short pageOffset) {
+        accessed.set(page);
         return getPage(page)[pageOffset];
     }
 
+    /**
+     * Copies a block of 16-bit words out of memory, one page at a time.
+     * 
+     * @param absoluteAddress
+     *            16-bit representation of the absolute memory address of the first word.
+     * @param values
+     *            the array to store the words in.
+     * @param offset
+     *            the index in {@code values} of the first word.
+     * @param length
+     *            the number of words to copy.
+     */
+    @Override
+    public void getMemory(final short absoluteAddress, final short[] values,
+        final int offset, final int length) {
+        int i = 0;
+        while (i < length) {
+            final short addr = (short) (absoluteAddress + i);
+            final int n = Math.min(length - i, 0x200 - addressOffset(addr));
+            accessed.set(pageAddress(addr));
+            System.arraycopy(getPage(pageAddress(addr)), addressOffset(addr), values,
+                offset + i, n);
+            i += n;
+        }
+    }
+
+    @Override
+    public void peekPage(final byte page, final short[] values) {
+        System.arraycopy(getPage(page), 0, values, 0, 0x200);
+    }
+
     /**
      * Sets the contents of the 16-bit word stored at the absolute memory address of the
      * current page to a 16-bit value.
@@ -110,7 +175,32 @@ public abstract class PagedMemory implements Memory {
      */
     @Override
     public void setMemory(final byte page, final short pageOffset, final short value) {
-        getPage(page)[pageOffset] = value;
+        getWritablePage(page)[pageOffset] = value;
+    }
+
+    /**
+     * Copies a block of 16-bit words into memory, one page at a time.
+     * 
+     * @param absoluteAddress
+     *            16-bit representation of the absolute memory address of the first word.
+     * @param values
+     *            the array holding the words to store.
+     * @param offset
+     *            the index in {@code values} of the first word.
+     * @param length
+     *            the number of words to store.
+     */
+    @Override
+    public void setMemory(final short absoluteAddress, final short[] values,
+        final int offset, final int length) {
+        int i = 0;
+        while (i < length) {
+            final short addr = (short) (absoluteAddress + i);
+            final int n = Math.min(length - i, 0x200 - addressOffset(addr));
+            System.arraycopy(values, offset + i, getWritablePage(pageAddress(addr)),
+                addressOffset(addr), n);
+            i += n;
+        }
     }
 
     /**
@@ -123,6 +213,82 @@ public abstract class PagedMemory implements Memory {
      */
     protected abstract short[] getPage(final byte page);
 
+    /**
+     * Retrieves a page of memory to be written to, first copying it if it is shared with
+     * another {@code PagedMemory}, and marks it as dirty.
+     * 
+     * @param page
+     *            the <i>i</i>th page in memory
+     * @return the words of memory that make up the <i>i</i>th page.
+     */
+    protected short[] getWritablePage(final byte page) {
+        dirty.set(page);
+        accessed.set(page);
+        changed.set(page);
+        if (shared[page]) {
+            shared[page] = false;
+            memory[page] = getPage(page).clone();
+        }
+        return getPage(page);
+    }
+
+    /**
+     * Creates an empty memory of the same kind and size as this one, with its pages not
+     * yet initialized.
+     * 
+     * @param random
+     *            the random number generator for the new memory
+     * @return the new memory
+     */
+    protected abstract PagedMemory newInstance(XorShift random);
+
+    /**
+     * Forks this memory. No words are copied: the fork starts out sharing every page
+     * which has been used with this memory, and either one copies a shared page the
+     * first time it writes to it. Pages not yet used are initialized separately by each
+     * memory. This memory must not be in use by another thread while it is being
+     * forked, but after that the two can be used from different threads.
+     * 
+     * @param random
+     *            the random number generator of the fork
+     * @return the fork
+     */
+    @Override
+    public PagedMemory fork(final XorShift random) {
+        final PagedMemory copy = newInstance(random);
+        for (int i = 0; i < memory.length; i++)
+            if (memory[i] != null) {
+                copy.memory[i] = memory[i];
+                copy.shared[i] = shared[i] = true;
+            }
+        return copy;
+    }
+
+    @Override
+    public BitSet getDirtyPages() {
+        return dirty.toBitSet();
+    }
+
+    @Override
+    public BitSet getAccessedPages() {
+        return accessed.toBitSet();
+    }
+
+    @Override
+    public void clearDirtyPages() {
+        dirty.clear();
+    }
+
+    @Override
+    public void clearAccessedPages() {
+        accessed.clear();
+    }
+
+    @Override
+    public BitSet takeChangedPages() {
+        return changed.take();
+    }
+
     /**
      * Gets the page number of a 16-bit memory address by extracting the high 7 bits.
      * 
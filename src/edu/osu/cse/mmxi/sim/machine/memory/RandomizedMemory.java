@@ -1,6 +1,6 @@
 package edu.osu.cse.mmxi.sim.machine.memory;
 
-import edu.osu.cse.mmxi.common.Utilities;
+import edu.osu.cse.mmxi.common.XorShift;
 
 /**
  * An implementation of physical memory where all words in all pages are initialized to
@@ -8,12 +8,18 @@ import edu.osu.cse.mmxi.common.Utilities;
  */
 public class RandomizedMemory extends PagedMemory {
 
+    private final XorShift random;
+
     /**
      * Creates a {@code RandomizedMemory} object with 128 pages. The memory itself is not
      * initialized at this step, being instead initialized when the page is first used.
+     * 
+     * @param _random
+     *            the random number generator used to fill pages
      */
-    public RandomizedMemory() {
+    public RandomizedMemory(final XorShift _random) {
         super();
+        random = _random;
     }
 
     /**
@@ -23,9 +29,12 @@ public class RandomizedMemory extends PagedMemory {
      * 
      * @param numPages
      *            the number of pages in memory
+     * @param _random
+     *            the random number generator used to fill pages
      */
-    public RandomizedMemory(final int numPages) {
+    public RandomizedMemory(final int numPages, final XorShift _random) {
         super(numPages);
+        random = _random;
     }
 
     /**
@@ -40,8 +49,13 @@ public class RandomizedMemory extends PagedMemory {
         if (memory[page] == null) {
             memory[page] = new short[0x200];
             for (int i = 0; i < 0x200; i++)
-                memory[page][i] = Utilities.randomShort();
+                memory[page][i] = random.nextShort();
         }
         return memory[page];
     }
+
+    @Override
+    protected PagedMemory newInstance(final XorShift _random) {
+        return new RandomizedMemory(memory.length, _random);
+    }
 }
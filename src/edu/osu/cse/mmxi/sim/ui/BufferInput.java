@@ -0,0 +1,31 @@
+package edu.osu.cse.mmxi.sim.ui;
+
+/**
+ * Input held in memory. The bytes are not copied, so many runs of a program may read
+ * the same input, each through its own BufferInput, or one BufferInput may be
+ * {@link #rewind() rewound} between runs.
+ */
+public class BufferInput implements InputSource {
+    private final byte[] bytes;
+    private int          pos;
+
+    public BufferInput(final byte[] _bytes) {
+        bytes = _bytes;
+    }
+
+    public BufferInput(final String text) {
+        this(text.getBytes());
+    }
+
+    @Override
+    public int read() {
+        return pos < bytes.length ? bytes[pos++] & 0xFF : -1;
+    }
+
+    /**
+     * Starts reading the input again from the beginning.
+     */
+    public void rewind() {
+        pos = 0;
+    }
+}
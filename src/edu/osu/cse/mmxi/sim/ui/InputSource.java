@@ -0,0 +1,20 @@
+package edu.osu.cse.mmxi.sim.ui;
+
+import java.io.IOException;
+
+/**
+ * Where a program's input comes from: the characters read by {@code TRAP IN} and the
+ * numbers read by {@code TRAP INN} (see {@link SimUI#setInput(InputSource)}). The
+ * Console's commands and other prompts are always read from the console. The input may
+ * be the console or a file (see {@link StreamInput}), a fixed buffer (see
+ * {@link BufferInput}), or generated on demand by any other implementation.
+ */
+public interface InputSource {
+    /**
+     * Reads the next byte of input.
+     * 
+     * @return the byte, from 0 to 255, or -1 if there is no more input
+     * @throws IOException
+     */
+    int read() throws IOException;
+}
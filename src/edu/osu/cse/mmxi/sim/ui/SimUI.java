@@ -1,20 +1,78 @@
 package edu.osu.cse.mmxi.sim.ui;
 
 import java.io.IOException;
-import java.util.NoSuchElementException;
-import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import edu.osu.cse.mmxi.common.UI;
 import edu.osu.cse.mmxi.common.error.Error;
 import edu.osu.cse.mmxi.sim.error.SimCodes;
 
+/**
+ * <p>
+ * The simulator's console. Everything printed (including the characters written by
+ * {@code TRAP OUT} and {@code TRAP PUTS}, through {@link #putChar(char)}) is collected
+ * in a buffer rather than written at once, so a program which prints one character at
+ * a time does not pay for a write to the console on every character. The buffer is
+ * written out when it fills up, before anything is read or printed to standard error,
+ * when the program halts, and whenever {@link #flush()} is called.
+ * </p>
+ * 
+ * <p>
+ * With {@link #setAsync(boolean)}, a full buffer is handed to a background thread to be
+ * written, so the machine keeps running while the console catches up. The other flush
+ * points still wait for all of the output to be written.
+ * </p>
+ * 
+ * <p>
+ * The program's input (for {@code TRAP IN} and {@code TRAP INN}) is read from an
+ * {@link InputSource}, which is the console unless another one is set with
+ * {@link #setInput(InputSource)}, such as a file or a buffer prepared by a test. The
+ * answers to prompts are always read from the console, through the same buffer when
+ * the program's input is the console too.
+ * </p>
+ */
 public class SimUI extends UI {
 
     public enum UIMode {
-        QUIET, TRACE, STEP
+        QUIET, TRACE, STEP, BATCH
     };
 
-    private UIMode mode;
+    /**
+     * Thrown by {@link SimUI#exit()} in batch mode instead of exiting the JVM, so that
+     * the caller can report the fault (and its exit status) itself.
+     */
+    public static class Fault extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * The number of characters collected before the buffer is written out.
+     */
+    public static final int     BUFFER = 8192;
+
+    private UIMode              mode;
+
+    /**
+     * The output which has not been written yet.
+     */
+    private final StringBuilder pending;
+
+    /**
+     * The thread which writes full buffers, and the last write handed to it, in
+     * asynchronous mode; otherwise {@code null}.
+     */
+    private ExecutorService     writer;
+    private Future<?>           written;
+
+    /**
+     * The console, and where the program's input is read from if not the console; each
+     * is {@code null} until it is first needed.
+     */
+    private InputSource         console, input;
 
     public SimUI() {
         this(null);
@@ -22,6 +80,7 @@ public class SimUI extends UI {
 
     public SimUI(final UIMode _mode) {
         mode = _mode;
+        pending = new StringBuilder(BUFFER);
     }
 
     public boolean setMode(final UIMode _mode) {
@@ -34,10 +93,162 @@ public class SimUI extends UI {
         return mode;
     }
 
+    /**
+     * Chooses whether full buffers are written by a background thread.
+     * 
+     * @param async
+     *            {@code true} to write output on a background thread
+     */
+    public void setAsync(final boolean async) {
+        if (async && writer == null)
+            writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final Thread t = new Thread(r, "SimUI writer");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        else if (!async && writer != null) {
+            flush();
+            writer.shutdown();
+            writer = null;
+        }
+    }
+
+    @Override
+    public void print(final String msg) {
+        pending.append(msg);
+        if (pending.length() >= BUFFER)
+            write(false);
+    }
+
+    @Override
+    public void println(final String msg) {
+        print(msg + System.getProperty("line.separator"));
+    }
+
+    /**
+     * Prints a single character, as for {@code TRAP OUT}, without making a String of it.
+     * 
+     * @param c
+     *            the character
+     */
+    public void putChar(final char c) {
+        pending.append(c);
+        if (pending.length() >= BUFFER)
+            write(false);
+    }
+
+    @Override
+    public void flush() {
+        write(true);
+    }
+
+    /**
+     * Writes out the buffer, directly or by handing it to the writer thread.
+     * 
+     * @param wait
+     *            whether to wait until everything printed so far has been written
+     */
+    private void write(final boolean wait) {
+        if (pending.length() != 0) {
+            final String s = pending.toString();
+            pending.setLength(0);
+            if (writer == null)
+                out.print(s);
+            else
+                written = writer.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        out.print(s);
+                        out.flush();
+                    }
+                });
+        }
+        if (wait) {
+            if (written != null)
+                try {
+                    written.get();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (final ExecutionException e) {
+                }
+            written = null;
+            out.flush();
+        }
+    }
+
+    @Override
+    public void warn(final String msg) {
+        flush();
+        super.warn(msg);
+    }
+
+    /**
+     * In batch mode, throws a {@link Fault} instead of exiting.
+     */
+    @Override
+    public void exit() {
+        flush();
+        if (mode == UIMode.BATCH)
+            throw new Fault();
+        super.exit();
+    }
+
+    /**
+     * Sets where the program's input is read from. By default, it is read from the
+     * console. Answers to prompts are always read from the console.
+     * 
+     * @param _input
+     *            the input source
+     */
+    public void setInput(final InputSource _input) {
+        input = _input;
+    }
+
+    /**
+     * @return the input source, which is the console unless another has been set
+     */
+    public InputSource getInput() {
+        if (input == null)
+            input = getConsole();
+        return input;
+    }
+
+    private InputSource getConsole() {
+        if (console == null)
+            console = new StreamInput(in);
+        return console;
+    }
+
+    /**
+     * In batch mode, nobody is there to answer, so prompts are not shown and the answer
+     * is always empty. Otherwise, the answer is the next line of the console.
+     */
+    @Override
+    public String prompt(final String msg) {
+        if (mode == UIMode.BATCH)
+            return "";
+        print(msg);
+        flush();
+        final InputSource con = getConsole();
+        final StringBuilder line = new StringBuilder();
+        try {
+            for (int c = con.read(); c != -1 && c != '\n'; c = con.read())
+                line.append((char) c);
+        } catch (final IOException e) {
+        }
+        if (line.length() != 0 && line.charAt(line.length() - 1) == '\r')
+            line.setLength(line.length() - 1);
+        return line.toString();
+    }
+
     public byte getChar() {
+        flush();
         byte b = 0;
         try {
-            final int n = in.read();
+            final int n = getInput().read();
             if (n != -1)
                 b = (byte) n;
         } catch (final IOException e) {
@@ -49,20 +260,19 @@ public class SimUI extends UI {
     public short getShort() {
         short s = 0;
         String prompt = "Enter a number: ";
-        final Scanner sc = new Scanner(in);
         String num;
         while (true) {
             print(prompt);
-            num = null;
-            try {
-                num = sc.next("-?(0[xX][0-9A-Fa-f]+|[0-9]+)");
-            } catch (final NoSuchElementException e) {
+            flush();
+            num = readWord();
+            if (num != null && num.matches("-?(0[xX][0-9A-Fa-f]+|[0-9]+)"))
+                break;
+            if (num == null || mode == UIMode.BATCH) {
                 printErrors(new Error("while reading number", SimCodes.EXEC_END_OF_FILE));
+                exit();
+                return 0;
             }
-            if (num == null)
-                prompt = "You can do better than that. Put your heart into it: ";
-            else
-                break;
+            prompt = "You can do better than that. Put your heart into it: ";
         }
         boolean neg = false;
         if (num.charAt(0) == '-') {
@@ -75,4 +285,24 @@ public class SimUI extends UI {
             s = Short.parseShort((neg ? "-" : "") + num);
         return s;
     }
+
+    /**
+     * Reads the next word of input, skipping any whitespace before it.
+     * 
+     * @return the word, or {@code null} if there is no more input
+     */
+    private String readWord() {
+        final StringBuilder word = new StringBuilder();
+        try {
+            int c = getInput().read();
+            while (c != -1 && Character.isWhitespace(c))
+                c = getInput().read();
+            while (c != -1 && !Character.isWhitespace(c)) {
+                word.append((char) c);
+                c = getInput().read();
+            }
+        } catch (final IOException e) {
+        }
+        return word.length() == 0 ? null : word.toString();
+    }
 }
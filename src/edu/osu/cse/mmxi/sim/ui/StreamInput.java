@@ -0,0 +1,37 @@
+package edu.osu.cse.mmxi.sim.ui;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input read from a stream, such as the console or a file, in blocks of up to
+ * {@link #BUFFER} bytes, so that reading a character is usually an array access rather
+ * than a call into the stream. Nothing is read from the stream until it is needed, and
+ * a read from the console returns as soon as a line is available.
+ */
+public class StreamInput implements InputSource {
+    /**
+     * The largest number of bytes read from the stream at once.
+     */
+    public static final int   BUFFER = 8192;
+
+    private final InputStream in;
+    private final byte[]      buf;
+    private int               pos, len;
+
+    public StreamInput(final InputStream _in) {
+        in = _in;
+        buf = new byte[BUFFER];
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (pos == len) {
+            pos = 0;
+            len = Math.max(in.read(buf), 0);
+            if (len == 0)
+                return -1;
+        }
+        return buf[pos++] & 0xFF;
+    }
+}